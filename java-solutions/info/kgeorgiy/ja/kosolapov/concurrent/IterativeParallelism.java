@@ -4,17 +4,47 @@ package info.kgeorgiy.ja.kosolapov.concurrent;
 import info.kgeorgiy.java.advanced.concurrent.ListIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.List;
-import java.util.function.Function;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.*;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public class IterativeParallelism implements ListIP {
+    /**
+     * Count of elements rendered at once by {@link #join(int, List, Writer)}
+     */
+    private static final int JOIN_BLOCK_SIZE = 1 << 14;
+
     private final ParallelMapper parallelMapper;
+    private final boolean sharedMapper;
+    private final Splitter splitter;
+    private final SplitMetrics splitMetrics = new SplitMetrics();
+    private final Set<ObjectName> mbeans = Collections.synchronizedSet(new HashSet<>());
+
+    /**
+     * Way to run chunks of work
+     */
+    public enum Mode {
+        /**
+         * Start new thread for each chunk on every call
+         */
+        THREAD_PER_CHUNK,
+        /**
+         * Run chunks on long-lived daemon threads shared by all {@code IterativeParallelism} instances.
+         * Functions passed to such instance must not wait for other calls on shared pool.
+         */
+        SHARED_POOL
+    }
+
+    private static final class SharedPool {
+        private static final ParallelMapper MAPPER =
+                new ParallelMapperImpl(Runtime.getRuntime().availableProcessors(), true);
+    }
 
     /**
      * Create {@code IterativeParallelsim} that runs on {@code parallelMapper}
@@ -22,14 +52,50 @@ public class IterativeParallelism implements ListIP {
      * @param parallelMapper parallel mapper to run on
      */
     public IterativeParallelism(final ParallelMapper parallelMapper) {
+        this(parallelMapper, Splitter.equal());
+    }
+
+    /**
+     * Create {@code IterativeParallelsim} that runs on {@code parallelMapper} and splits lists with {@code splitter}
+     *
+     * @param parallelMapper parallel mapper to run on
+     * @param splitter       strategy of splitting lists into chunks
+     */
+    public IterativeParallelism(final ParallelMapper parallelMapper, final Splitter splitter) {
+        this(parallelMapper, false, splitter);
+    }
+
+    private IterativeParallelism(final ParallelMapper parallelMapper, final boolean sharedMapper,
+                                 final Splitter splitter) {
         this.parallelMapper = parallelMapper;
+        this.sharedMapper = sharedMapper;
+        this.splitter = splitter;
     }
 
     /**
      * Creates {@code IIterativeParallelism} that generates own threads to run on
      */
     public IterativeParallelism() {
-        this(null);
+        this(Mode.THREAD_PER_CHUNK);
+    }
+
+    /**
+     * Creates {@code IterativeParallelism} that runs chunks in given {@code mode}
+     *
+     * @param mode way to run chunks
+     */
+    public IterativeParallelism(final Mode mode) {
+        this(mode, Splitter.equal());
+    }
+
+    /**
+     * Creates {@code IterativeParallelism} that runs chunks in given {@code mode} and splits lists with {@code splitter}
+     *
+     * @param mode     way to run chunks
+     * @param splitter strategy of splitting lists into chunks
+     */
+    public IterativeParallelism(final Mode mode, final Splitter splitter) {
+        this(mode == Mode.SHARED_POOL ? SharedPool.MAPPER : null, mode == Mode.SHARED_POOL, splitter);
     }
 
     /**
@@ -45,93 +111,187 @@ public class IterativeParallelism implements ListIP {
     }
 
     private static <T> Stream<List<? extends T>> split(final int count, final List<? extends T> list) {
-        final int size = list.size() / count;
-        final int mod = list.size() % count;
-        final int countOfThreads = Math.min(count, list.size());
-
-        return IntStream.range(0, countOfThreads)
-                .mapToObj(i -> {
-                            final int leftBorder = Math.min(i, mod) + i * size;
-                            final int rightBorder = leftBorder + size + (i < mod ? 1 : 0);
-                            return list.subList(leftBorder, rightBorder);
-                        }
-                );
-    }
-
-    private <T, E> Stream<? extends E> runOnThreadsAndGetResult(
-            final Stream<List<? extends T>> listStream,
-            final Function<List<? extends T>, ? extends E> function
-    ) throws InterruptedException {
+        final int[] borders = Splitter.equal().borders(count, list.size());
+        return IntStream.range(0, borders.length - 1)
+                .mapToObj(i -> list.subList(borders[i], borders[i + 1]));
+    }
+
+    private void runChunks(final int threads, final int[] borders, final Chunk chunk) throws InterruptedException {
+        final int chunks = borders.length - 1;
+        final int workers = Math.min(threads, chunks);
+        final AtomicInteger cursor = new AtomicInteger();
+        final long[] times = new long[workers];
+        final List<Runnable> runnables = IntStream.range(0, workers)
+                .<Runnable>mapToObj(worker -> () -> {
+                    final long start = System.nanoTime();
+                    for (int i = cursor.getAndIncrement(); i < chunks; i = cursor.getAndIncrement()) {
+                        chunk.run(i, borders[i], borders[i + 1]);
+                    }
+                    times[worker] = System.nanoTime() - start;
+                })
+                .toList();
+
         if (parallelMapper != null) {
-            return parallelMapper.map(function, listStream.toList())
-                    .stream();
-        }
-
-        // :NOTE: Переусложнение
-        final List<RunnableResult<T, E>> runnableList =
-                listStream
-                        .map(list -> new RunnableResult<T, E>(list, function))
-                        .toList();
-
-        final var threads =
-                runnableList
-                        .stream()
-                        .map(Thread::new)
-                        .peek(Thread::start)
-                        .toList();
+            parallelMapper.map(runnable -> {
+                runnable.run();
+                return null;
+            }, runnables);
+            splitMetrics.record(borders[chunks], chunks, times);
+            return;
+        }
+
+        final var threadList = runnables.stream()
+                .map(Thread::new)
+                .peek(Thread::start)
+                .toList();
         try {
-            for (var i : threads) {
+            for (var i : threadList) {
                 i.join();
             }
         } catch (InterruptedException e) {
-            ThreadFinisher.finishThreads(threads);
+            ThreadFinisher.finishThreads(threadList);
             throw new InterruptedException("Unexpected Interruption in IterativeParallelism(): " + e.getMessage());
         }
+        splitMetrics.record(borders[chunks], chunks, times);
+    }
+
+    /**
+     * Returns metrics of chunks run by this instance
+     *
+     * @return metrics of chunks
+     */
+    public SplitMetricsMXBean splitMetrics() {
+        return splitMetrics;
+    }
+
+    /**
+     * Registers {@link #splitMetrics()} in platform MBean server.
+     * If this instance runs on own {@link ParallelMapperImpl}, MBean is unregistered, when mapper is closed,
+     * otherwise it should be unregistered by {@link #unregisterMBeans()}.
+     *
+     * @param name name of this instance in {@link ObjectName}
+     * @return name of registered MBean
+     * @throws JMException if registration failed
+     */
+    public ObjectName registerMBean(final String name) throws JMException {
+        final ObjectName objectName = MBeans.register("IterativeParallelism", name, splitMetrics);
+        mbeans.add(objectName);
+        if (!sharedMapper && parallelMapper instanceof final ParallelMapperImpl mapper) {
+            mapper.onClose(() -> unregister(objectName));
+        }
+        return objectName;
+    }
 
-        return runnableList
-                .stream()
-                .map(RunnableResult::getResult);
+    /**
+     * Unregisters all MBeans of this instance from platform MBean server
+     */
+    public void unregisterMBeans() {
+        final List<ObjectName> names;
+        synchronized (mbeans) {
+            names = List.copyOf(mbeans);
+        }
+        names.forEach(this::unregister);
     }
 
-    private <T, E, P> P applyFunctionWithThreadsAndCollect(
-            final int threads, final List<? extends T> list,
-            final Function<List<? extends T>, ? extends E> function,
-            final Function<Stream<? extends E>, ? extends P> collector) throws InterruptedException {
-        return collector.apply(runOnThreadsAndGetResult(split(threads, list), function));
+    private void unregister(final ObjectName name) {
+        if (mbeans.remove(name)) {
+            MBeans.unregister(name);
+        }
     }
 
+    private static <T> List<? extends T> randomAccess(final List<? extends T> values) {
+        return values instanceof RandomAccess ? values : new ArrayList<>(values);
+    }
 
-    private <T> T applyStreamFunctionWithThreadsAndCollect(final int threads, final List<? extends T> values,
-                                                           final Function<Stream<? extends T>, ? extends T> function)
-            throws InterruptedException {
-        return applyStreamFunctionWithThreadsAndCollect(
-                threads,
-                values,
-                function,
-                function
-        );
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> asList(final Object[] values) {
+        return Collections.unmodifiableList(Arrays.asList((T[]) values));
     }
 
-    private <T, E, P> P applyStreamFunctionWithThreadsAndCollect(final int threads, final List<? extends T> values,
-                                                                 final Function<Stream<? extends T>, ? extends E> function,
-                                                                 final Function<Stream<? extends E>, ? extends P> collector)
-            throws InterruptedException {
-        return applyFunctionWithThreadsAndCollect(
-                threads,
-                values,
-                l -> function.apply(l.stream()),
-                collector
-        );
+    private <T, R> R reduceChunks(final int threads, final List<? extends T> list, final int[] borders,
+                                  final Function<? super T, ? extends R> lift,
+                                  final BinaryOperator<R> operator, final R empty) throws InterruptedException {
+        final Object[] partials = new Object[borders.length - 1];
+        runChunks(threads, borders, (index, from, to) -> {
+            R result = lift.apply(list.get(from));
+            for (int i = from + 1; i < to; i++) {
+                result = operator.apply(result, lift.apply(list.get(i)));
+            }
+            partials[index] = result;
+        });
+        return combine(partials, operator, empty);
     }
 
-    private <T, E> List<E> applyWithFlattenCollector(final int threads, final List<? extends T> values,
-                                                     final Function<Stream<? extends T>, Stream<? extends E>> function)
+    @SuppressWarnings("unchecked")
+    private static <R> R combine(final Object[] partials, final BinaryOperator<R> operator, final R empty) {
+        if (partials.length == 0) {
+            return empty;
+        }
+        for (int step = 1; step < partials.length; step *= 2) {
+            for (int i = 0; i + step < partials.length; i += 2 * step) {
+                partials[i] = operator.apply((R) partials[i], (R) partials[i + step]);
+            }
+        }
+        return (R) partials[0];
+    }
+
+    /**
+     * Reduce {@code values} with {@code operator} using {@code threads} threads.
+     *
+     * @param threads  number of concurrent threads
+     * @param values   values to reduce
+     * @param identity neutral element of {@code operator}
+     * @param operator associative operation
+     * @param <T>      type of values
+     * @return reduction of {@code values} or {@code identity} if {@code values} is empty
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public <T> T reduce(final int threads, final List<? extends T> values, final T identity,
+                        final BinaryOperator<T> operator) throws InterruptedException {
+        return mapReduce(threads, values, Function.identity(), new Monoid<>(identity, operator));
+    }
+
+    /**
+     * Lift {@code values} with {@code lift} and reduce them in {@code monoid} using {@code threads} threads.
+     * Partial results of chunks are combined pairwise.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to reduce
+     * @param lift    function applied to each value
+     * @param monoid  monoid to reduce lifted values in
+     * @param <T>     type of values
+     * @param <R>     type of lifted values
+     * @return reduction of lifted {@code values} or {@code monoid.identity()} if {@code values} is empty
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public <T, R> R mapReduce(final int threads, final List<? extends T> values,
+                              final Function<? super T, ? extends R> lift, final Monoid<R> monoid)
             throws InterruptedException {
-        return applyStreamFunctionWithThreadsAndCollect(
-                threads,
-                values,
-                l -> function.apply(l).toList(),
-                s -> s.<E>flatMap(Collection::stream).toList());
+        final List<? extends T> list = randomAccess(values);
+        return reduceChunks(threads, list, splitter.borders(threads, list.size()), lift, monoid.operator(),
+                monoid.identity());
+    }
+
+    /**
+     * Lift {@code values} with {@code lift} and reduce them in {@code monoid} using {@code threads} threads.
+     * Values are split into chunks with close total {@code cost}, instead of splitter of this instance.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to reduce
+     * @param lift    function applied to each value
+     * @param monoid  monoid to reduce lifted values in
+     * @param cost    estimated cost of lifting value, see {@link Splitter#byCost}
+     * @param <T>     type of values
+     * @param <R>     type of lifted values
+     * @return reduction of lifted {@code values} or {@code monoid.identity()} if {@code values} is empty
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public <T, R> R mapReduce(final int threads, final List<? extends T> values,
+                              final Function<? super T, ? extends R> lift, final Monoid<R> monoid,
+                              final ToLongFunction<? super T> cost) throws InterruptedException {
+        final List<? extends T> list = randomAccess(values);
+        return reduceChunks(threads, list, Splitter.byCost(threads, list, cost), lift, monoid.operator(),
+                monoid.identity());
     }
 
     /**
@@ -139,11 +299,63 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public String join(final int threads, final List<?> values) throws InterruptedException {
-        return applyStreamFunctionWithThreadsAndCollect(
-                threads,
-                values,
-                l -> l.map(String::valueOf).collect(Collectors.joining()),
-                s -> s.collect(Collectors.joining()));
+        final List<?> list = randomAccess(values);
+        final int[] borders = splitter.borders(threads, list.size());
+        final String[] strings = new String[list.size()];
+        final long[] offsets = new long[borders.length];
+        runChunks(threads, borders, (index, from, to) -> {
+            long length = 0;
+            for (int i = from; i < to; i++) {
+                strings[i] = String.valueOf(list.get(i));
+                length += strings[i].length();
+            }
+            offsets[index + 1] = length;
+        });
+
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        final long length = offsets[offsets.length - 1];
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new OutOfMemoryError("Joined string is too long: " + length);
+        }
+
+        final char[] buffer = new char[(int) length];
+        runChunks(threads, borders, (index, from, to) -> {
+            int position = (int) offsets[index];
+            for (int i = from; i < to; i++) {
+                strings[i].getChars(0, strings[i].length(), buffer, position);
+                position += strings[i].length();
+            }
+        });
+        return new String(buffer);
+    }
+
+    /**
+     * Writes concatenation of string representations of {@code values} to {@code writer}.
+     * Elements are rendered in parallel by blocks, so joined string is never kept in memory.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to join
+     * @param writer  writer to write joined string to
+     * @throws InterruptedException if executing thread was interrupted
+     * @throws IOException          if {@code writer} failed
+     */
+    public void join(final int threads, final List<?> values, final Writer writer)
+            throws InterruptedException, IOException {
+        final List<?> list = randomAccess(values);
+        for (int start = 0; start < list.size(); start += JOIN_BLOCK_SIZE) {
+            final List<?> block = list.subList(start, Math.min(list.size(), start + JOIN_BLOCK_SIZE));
+            final String[] strings = new String[block.size()];
+            runChunks(threads, splitter.borders(threads, block.size()), (index, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    strings[i] = String.valueOf(block.get(i));
+                }
+            });
+            for (final String string : strings) {
+                writer.write(string);
+            }
+        }
     }
 
     /**
@@ -152,11 +364,44 @@ public class IterativeParallelism implements ListIP {
     @Override
     public <T> List<T> filter(final int threads, final List<? extends T> values, final Predicate<? super T> predicate)
             throws InterruptedException {
-        // :NOTE: Дубли
-        return applyWithFlattenCollector(
-                threads,
-                values,
-                s -> s.filter(predicate));
+        final List<? extends T> list = randomAccess(values);
+        return filterChunks(threads, list, splitter.borders(threads, list.size()), predicate);
+    }
+
+    /**
+     * Filters {@code values} with {@code predicate} using {@code threads} threads.
+     * Values are split into chunks with close total {@code cost}, instead of splitter of this instance.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to filter
+     * @param predicate predicate to test values
+     * @param cost      estimated cost of testing value, see {@link Splitter#byCost}
+     * @param <T>       type of values
+     * @return values, that satisfy {@code predicate}, in order of {@code values}
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public <T> List<T> filter(final int threads, final List<? extends T> values, final Predicate<? super T> predicate,
+                              final ToLongFunction<? super T> cost) throws InterruptedException {
+        final List<? extends T> list = randomAccess(values);
+        return filterChunks(threads, list, Splitter.byCost(threads, list, cost), predicate);
+    }
+
+    private <T> List<T> filterChunks(final int threads, final List<? extends T> list, final int[] borders,
+                                     final Predicate<? super T> predicate) throws InterruptedException {
+        final Object[] kept = new Object[list.size()];
+        final int[] keptTo = new int[borders.length - 1];
+        runChunks(threads, borders, (index, from, to) -> {
+            int last = from;
+            for (int i = from; i < to; i++) {
+                final T value = list.get(i);
+                if (predicate.test(value)) {
+                    kept[last++] = value;
+                }
+            }
+            keptTo[index] = last;
+        });
+
+        return asList(compact(kept, borders, keptTo, Object[]::new));
     }
 
     /**
@@ -165,10 +410,39 @@ public class IterativeParallelism implements ListIP {
     @Override
     public <T, U> List<U> map(final int threads, final List<? extends T> values, final Function<? super T, ? extends U> f)
             throws InterruptedException {
-        return applyWithFlattenCollector(
-                threads,
-                values,
-                s -> s.map(f));
+        final List<? extends T> list = randomAccess(values);
+        return mapChunks(threads, list, splitter.borders(threads, list.size()), f);
+    }
+
+    /**
+     * Applies {@code f} to {@code values} using {@code threads} threads.
+     * Values are split into chunks with close total {@code cost}, instead of splitter of this instance.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to apply {@code f} to
+     * @param f       function to apply
+     * @param cost    estimated cost of applying {@code f} to value, see {@link Splitter#byCost}
+     * @param <T>     type of values
+     * @param <U>     type of results
+     * @return results of {@code f} in order of {@code values}
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public <T, U> List<U> map(final int threads, final List<? extends T> values,
+                              final Function<? super T, ? extends U> f, final ToLongFunction<? super T> cost)
+            throws InterruptedException {
+        final List<? extends T> list = randomAccess(values);
+        return mapChunks(threads, list, Splitter.byCost(threads, list, cost), f);
+    }
+
+    private <T, U> List<U> mapChunks(final int threads, final List<? extends T> list, final int[] borders,
+                                     final Function<? super T, ? extends U> f) throws InterruptedException {
+        final Object[] result = new Object[list.size()];
+        runChunks(threads, borders, (index, from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = f.apply(list.get(i));
+            }
+        });
+        return asList(result);
     }
 
     /**
@@ -186,10 +460,9 @@ public class IterativeParallelism implements ListIP {
     @Override
     public <T> T minimum(final int threads, final List<? extends T> values, final Comparator<? super T> comparator)
             throws InterruptedException {
-        return applyStreamFunctionWithThreadsAndCollect(
-                threads,
-                values,
-                l -> l.min(comparator).orElse(null));
+        final List<? extends T> list = randomAccess(values);
+        return reduceChunks(threads, list, splitter.borders(threads, list.size()), Function.<T>identity(),
+                BinaryOperator.minBy(comparator), null);
     }
 
     /**
@@ -198,41 +471,398 @@ public class IterativeParallelism implements ListIP {
     @Override
     public <T> boolean all(final int threads, final List<? extends T> values, final Predicate<? super T> predicate)
             throws InterruptedException {
-        return applyStreamFunctionWithThreadsAndCollect(
-                threads,
-                values,
-                l -> l.allMatch(predicate),
-                s -> s.allMatch(Boolean::booleanValue));
+        return !any(threads, values, predicate.negate());
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * Chunks stop as soon as any of them finds matching element.
      */
     @Override
     public <T> boolean any(final int threads, final List<? extends T> values, final Predicate<? super T> predicate) throws InterruptedException {
-        return !all(threads, values, predicate.negate());
+        final List<? extends T> list = randomAccess(values);
+        final StopFlag found = new StopFlag();
+        runChunks(threads, splitter.borders(threads, list.size()), (index, from, to) -> {
+            for (int i = from; i < to && !found.isStopped(); i++) {
+                if (predicate.test(list.get(i))) {
+                    found.stop();
+                }
+            }
+        });
+        return found.isStopped();
     }
 
+    /**
+     * Returns sum of {@code values} using {@code threads} threads.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to sum
+     * @return sum of {@code values}
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public long sum(final int threads, final int[] values) throws InterruptedException {
+        final int[] borders = splitter.borders(threads, values.length);
+        final long[] partials = new long[borders.length - 1];
+        runChunks(threads, borders, (index, from, to) -> {
+            long sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += values[i];
+            }
+            partials[index] = sum;
+        });
+        long sum = 0;
+        for (final long partial : partials) {
+            sum += partial;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns minimum of {@code values} using {@code threads} threads.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get minimum of
+     * @return minimum of {@code values} or empty optional if {@code values} is empty
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public OptionalInt minimum(final int threads, final int[] values) throws InterruptedException {
+        return reduce(threads, values, Math::min);
+    }
+
+    /**
+     * Returns maximum of {@code values} using {@code threads} threads.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get maximum of
+     * @return maximum of {@code values} or empty optional if {@code values} is empty
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public OptionalInt maximum(final int threads, final int[] values) throws InterruptedException {
+        return reduce(threads, values, Math::max);
+    }
+
+    private OptionalInt reduce(final int threads, final int[] values, final IntBinaryOperator operator)
+            throws InterruptedException {
+        final int[] borders = splitter.borders(threads, values.length);
+        final int[] partials = new int[borders.length - 1];
+        runChunks(threads, borders, (index, from, to) -> {
+            int result = values[from];
+            for (int i = from + 1; i < to; i++) {
+                result = operator.applyAsInt(result, values[i]);
+            }
+            partials[index] = result;
+        });
+        if (partials.length == 0) {
+            return OptionalInt.empty();
+        }
+        int result = partials[0];
+        for (int i = 1; i < partials.length; i++) {
+            result = operator.applyAsInt(result, partials[i]);
+        }
+        return OptionalInt.of(result);
+    }
+
+    /**
+     * Returns array of results of {@code f} applied to {@code values} using {@code threads} threads.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to apply {@code f} to
+     * @param f       function to apply
+     * @return results of {@code f} in order of {@code values}
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public int[] map(final int threads, final int[] values, final IntUnaryOperator f) throws InterruptedException {
+        final int[] result = new int[values.length];
+        runChunks(threads, splitter.borders(threads, values.length), (index, from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = f.applyAsInt(values[i]);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns array of {@code values}, that satisfy {@code predicate}, using {@code threads} threads.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to filter
+     * @param predicate predicate to test values
+     * @return values, that satisfy {@code predicate}, in order of {@code values}
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public int[] filter(final int threads, final int[] values, final IntPredicate predicate) throws InterruptedException {
+        final int[] borders = splitter.borders(threads, values.length);
+        final int[] kept = new int[values.length];
+        final int[] keptTo = new int[borders.length - 1];
+        runChunks(threads, borders, (index, from, to) -> {
+            int last = from;
+            for (int i = from; i < to; i++) {
+                if (predicate.test(values[i])) {
+                    kept[last++] = values[i];
+                }
+            }
+            keptTo[index] = last;
+        });
+        return compact(kept, borders, keptTo, int[]::new);
+    }
+
+    /**
+     * Returns sum of {@code values} using {@code threads} threads.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to sum
+     * @return sum of {@code values}
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public long sum(final int threads, final long[] values) throws InterruptedException {
+        final int[] borders = splitter.borders(threads, values.length);
+        final long[] partials = new long[borders.length - 1];
+        runChunks(threads, borders, (index, from, to) -> {
+            long sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += values[i];
+            }
+            partials[index] = sum;
+        });
+        long sum = 0;
+        for (final long partial : partials) {
+            sum += partial;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns minimum of {@code values} using {@code threads} threads.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get minimum of
+     * @return minimum of {@code values} or empty optional if {@code values} is empty
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public OptionalLong minimum(final int threads, final long[] values) throws InterruptedException {
+        return reduce(threads, values, Math::min);
+    }
+
+    /**
+     * Returns maximum of {@code values} using {@code threads} threads.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get maximum of
+     * @return maximum of {@code values} or empty optional if {@code values} is empty
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public OptionalLong maximum(final int threads, final long[] values) throws InterruptedException {
+        return reduce(threads, values, Math::max);
+    }
+
+    private OptionalLong reduce(final int threads, final long[] values, final LongBinaryOperator operator)
+            throws InterruptedException {
+        final int[] borders = splitter.borders(threads, values.length);
+        final long[] partials = new long[borders.length - 1];
+        runChunks(threads, borders, (index, from, to) -> {
+            long result = values[from];
+            for (int i = from + 1; i < to; i++) {
+                result = operator.applyAsLong(result, values[i]);
+            }
+            partials[index] = result;
+        });
+        if (partials.length == 0) {
+            return OptionalLong.empty();
+        }
+        long result = partials[0];
+        for (int i = 1; i < partials.length; i++) {
+            result = operator.applyAsLong(result, partials[i]);
+        }
+        return OptionalLong.of(result);
+    }
 
-    private static class RunnableResult<T, E> implements Runnable {
-        private final List<? extends T> list;
-        private final Function<List<? extends T>, ? extends E> function;
-        private E result;
+    /**
+     * Returns array of results of {@code f} applied to {@code values} using {@code threads} threads.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to apply {@code f} to
+     * @param f       function to apply
+     * @return results of {@code f} in order of {@code values}
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public long[] map(final int threads, final long[] values, final LongUnaryOperator f) throws InterruptedException {
+        final long[] result = new long[values.length];
+        runChunks(threads, splitter.borders(threads, values.length), (index, from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = f.applyAsLong(values[i]);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns array of {@code values}, that satisfy {@code predicate}, using {@code threads} threads.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to filter
+     * @param predicate predicate to test values
+     * @return values, that satisfy {@code predicate}, in order of {@code values}
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public long[] filter(final int threads, final long[] values, final LongPredicate predicate) throws InterruptedException {
+        final int[] borders = splitter.borders(threads, values.length);
+        final long[] kept = new long[values.length];
+        final int[] keptTo = new int[borders.length - 1];
+        runChunks(threads, borders, (index, from, to) -> {
+            int last = from;
+            for (int i = from; i < to; i++) {
+                if (predicate.test(values[i])) {
+                    kept[last++] = values[i];
+                }
+            }
+            keptTo[index] = last;
+        });
+        return compact(kept, borders, keptTo, long[]::new);
+    }
 
-        RunnableResult(final List<? extends T> list,
-                       final Function<List<? extends T>, ? extends E> function) {
-            this.list = list;
-            this.function = function;
+    /**
+     * Returns sum of {@code values} using {@code threads} threads.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to sum
+     * @return sum of {@code values}
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public double sum(final int threads, final double[] values) throws InterruptedException {
+        final int[] borders = splitter.borders(threads, values.length);
+        final double[] partials = new double[borders.length - 1];
+        runChunks(threads, borders, (index, from, to) -> {
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += values[i];
+            }
+            partials[index] = sum;
+        });
+        double sum = 0;
+        for (final double partial : partials) {
+            sum += partial;
         }
+        return sum;
+    }
+
+    /**
+     * Returns minimum of {@code values} using {@code threads} threads.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get minimum of
+     * @return minimum of {@code values} or empty optional if {@code values} is empty
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public OptionalDouble minimum(final int threads, final double[] values) throws InterruptedException {
+        return reduce(threads, values, Math::min);
+    }
+
+    /**
+     * Returns maximum of {@code values} using {@code threads} threads.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to get maximum of
+     * @return maximum of {@code values} or empty optional if {@code values} is empty
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public OptionalDouble maximum(final int threads, final double[] values) throws InterruptedException {
+        return reduce(threads, values, Math::max);
+    }
 
-        @Override
-        public void run() {
-            result = function.apply(list);
+    private OptionalDouble reduce(final int threads, final double[] values, final DoubleBinaryOperator operator)
+            throws InterruptedException {
+        final int[] borders = splitter.borders(threads, values.length);
+        final double[] partials = new double[borders.length - 1];
+        runChunks(threads, borders, (index, from, to) -> {
+            double result = values[from];
+            for (int i = from + 1; i < to; i++) {
+                result = operator.applyAsDouble(result, values[i]);
+            }
+            partials[index] = result;
+        });
+        if (partials.length == 0) {
+            return OptionalDouble.empty();
         }
+        double result = partials[0];
+        for (int i = 1; i < partials.length; i++) {
+            result = operator.applyAsDouble(result, partials[i]);
+        }
+        return OptionalDouble.of(result);
+    }
+
+    /**
+     * Returns array of results of {@code f} applied to {@code values} using {@code threads} threads.
+     *
+     * @param threads number of concurrent threads
+     * @param values  values to apply {@code f} to
+     * @param f       function to apply
+     * @return results of {@code f} in order of {@code values}
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public double[] map(final int threads, final double[] values, final DoubleUnaryOperator f) throws InterruptedException {
+        final double[] result = new double[values.length];
+        runChunks(threads, splitter.borders(threads, values.length), (index, from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = f.applyAsDouble(values[i]);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns array of {@code values}, that satisfy {@code predicate}, using {@code threads} threads.
+     *
+     * @param threads   number of concurrent threads
+     * @param values    values to filter
+     * @param predicate predicate to test values
+     * @return values, that satisfy {@code predicate}, in order of {@code values}
+     * @throws InterruptedException if executing thread was interrupted
+     */
+    public double[] filter(final int threads, final double[] values, final DoublePredicate predicate) throws InterruptedException {
+        final int[] borders = splitter.borders(threads, values.length);
+        final double[] kept = new double[values.length];
+        final int[] keptTo = new int[borders.length - 1];
+        runChunks(threads, borders, (index, from, to) -> {
+            int last = from;
+            for (int i = from; i < to; i++) {
+                if (predicate.test(values[i])) {
+                    kept[last++] = values[i];
+                }
+            }
+            keptTo[index] = last;
+        });
+        return compact(kept, borders, keptTo, double[]::new);
+    }
 
-        public E getResult() {
-            return result;
+    private static <A> A compact(final A kept, final int[] borders, final int[] keptTo, final IntFunction<A> allocate) {
+        int size = 0;
+        for (int i = 0; i < keptTo.length; i++) {
+            size += keptTo[i] - borders[i];
+        }
+        final A result = allocate.apply(size);
+        int position = 0;
+        for (int i = 0; i < keptTo.length; i++) {
+            System.arraycopy(kept, borders[i], result, position, keptTo[i] - borders[i]);
+            position += keptTo[i] - borders[i];
         }
+        return result;
     }
 
+    @FunctionalInterface
+    private interface Chunk {
+        void run(int index, int from, int to);
+    }
+
+    private static final class StopFlag {
+        private volatile boolean stopped;
+
+        void stop() {
+            stopped = true;
+        }
+
+        boolean isStopped() {
+            return stopped;
+        }
+    }
 }
@@ -0,0 +1,54 @@
+package info.kgeorgiy.ja.kosolapov.concurrent;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registration of metrics MBeans in platform MBean server
+ */
+public final class MBeans {
+    private MBeans() {
+    }
+
+    static ObjectName register(final String type, final String name, final Object bean) throws JMException {
+        return register(MBeans.class.getPackageName(), type, name, bean);
+    }
+
+    /**
+     * Registers {@code bean} in platform MBean server
+     *
+     * @param domain domain of {@link ObjectName}
+     * @param type   type of bean
+     * @param name   name of bean, quoted in {@link ObjectName}
+     * @param bean   bean to register
+     * @return name of registered MBean
+     * @throws JMException if registration failed
+     */
+    public static ObjectName register(final String domain, final String type, final String name, final Object bean)
+            throws JMException {
+        final ObjectName objectName = new ObjectName(domain + ":type=" + type + ",name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(bean, objectName);
+        return objectName;
+    }
+
+    /**
+     * Unregisters MBean from platform MBean server, if it is still registered
+     *
+     * @param name name of MBean
+     */
+    public static void unregister(final ObjectName name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (final InstanceNotFoundException ignored) {
+            // Already unregistered
+        } catch (final JMException e) {
+            System.err.println("Can not unregister MBean " + name + ": " + e.getMessage());
+        }
+    }
+
+    static double ratio(final long numerator, final long denominator) {
+        return denominator == 0 ? 0 : (double) numerator / denominator;
+    }
+}
@@ -0,0 +1,61 @@
+package info.kgeorgiy.ja.kosolapov.concurrent;
+
+/**
+ * Metrics of {@link ParallelMapperImpl}. Times are measured in nanoseconds.
+ */
+public interface MapperMetricsMXBean {
+    /**
+     * @return count of {@code map} calls waiting for dispatch of their chunks
+     */
+    int getQueueDepth();
+
+    /**
+     * @return count of alive worker threads
+     */
+    int getWorkerCount();
+
+    /**
+     * @return count of worker threads, that are running chunks
+     */
+    int getBusyWorkerCount();
+
+    /**
+     * @return part of worker threads, that are running chunks
+     */
+    double getUtilization();
+
+    /**
+     * @return total count of {@code map} calls
+     */
+    long getCallCount();
+
+    /**
+     * @return total count of elements passed to {@code map} calls
+     */
+    long getElementCount();
+
+    /**
+     * @return total count of executed chunks
+     */
+    long getChunkCount();
+
+    /**
+     * @return average time between chunk became available and its dispatch to worker
+     */
+    double getAverageWaitTimeNanos();
+
+    /**
+     * @return maximal time between chunk became available and its dispatch to worker
+     */
+    long getMaxWaitTimeNanos();
+
+    /**
+     * @return average time of chunk execution
+     */
+    double getAverageExecutionTimeNanos();
+
+    /**
+     * @return total time of chunk execution by all workers
+     */
+    long getBusyTimeNanos();
+}
@@ -0,0 +1,13 @@
+package info.kgeorgiy.ja.kosolapov.concurrent;
+
+import java.util.function.BinaryOperator;
+
+/**
+ * Associative {@code operator} with neutral element {@code identity}
+ *
+ * @param identity neutral element of {@code operator}
+ * @param operator associative operation
+ * @param <T>      type of elements
+ */
+public record Monoid<T>(T identity, BinaryOperator<T> operator) {
+}
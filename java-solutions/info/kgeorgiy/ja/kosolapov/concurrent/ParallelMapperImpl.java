@@ -2,15 +2,55 @@ package info.kgeorgiy.ja.kosolapov.concurrent;
 
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Function;
-import java.util.stream.Stream;
+import java.util.function.ObjIntConsumer;
 
 public class ParallelMapperImpl implements ParallelMapper {
+    /**
+     * Maximal count of {@link #map} calls waiting for free worker. Further callers are blocked.
+     */
     public static final int MAX_QUEUE_SIZE = 15_000;
 
-    private final Queue<Runnable> queue = new ArrayDeque<>();
-    private final List<Thread> threads;
+    /**
+     * Expected count of chunks per worker thread produced by {@link #map}.
+     * Several chunks per thread smooth out uneven cost of elements.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Maximal count of elements in chunk, so bulk calls do not hold workers for long.
+     */
+    private static final int MAX_CHUNK_SIZE = 1 << 12;
+
+    /**
+     * Maximal count of chunks of one {@link #mapPublisher} subscription executed at the same time.
+     * Worker of such chunk is blocked, while subscriber does not request results.
+     */
+    private static final int PUBLISHER_CALLER_LIMIT = 2;
+
+    private final Queue<Job<?, ?>> queue = new ArrayDeque<>();
+    private final Set<Thread> threads = new HashSet<>();
+    private final int minThreads;
+    private final int maxThreads;
+    private final long idleTimeout;
+    private final boolean daemon;
+    private final int callerLimit;
+    private final Metrics metrics = new Metrics();
+    private final List<Runnable> closeActions = new ArrayList<>();
+    private int idle;
+    private boolean closed;
 
     /**
      * Create {@code ParallelMapperImpl} that run on {@code thread} threads
@@ -18,32 +58,158 @@ public class ParallelMapperImpl implements ParallelMapper {
      * @param thread count of threads
      */
     public ParallelMapperImpl(final int thread) {
-        final Runnable runner = () -> {
-            try {
-                while (!Thread.interrupted()) {
-                    pollTask().run();
-                }
-            } catch (final InterruptedException ignored) {
+        this(thread, false);
+    }
+
+    /**
+     * Create {@code ParallelMapperImpl} that run on {@code thread} threads
+     *
+     * @param thread count of threads
+     * @param daemon if {@code true}, worker threads do not prevent JVM from exit
+     */
+    public ParallelMapperImpl(final int thread, final boolean daemon) {
+        this(thread, daemon, thread);
+    }
+
+    /**
+     * Create {@code ParallelMapperImpl} that run on {@code thread} threads.
+     * Chunks of concurrent {@link #map} calls are dispatched in round-robin order.
+     *
+     * @param thread      count of threads
+     * @param daemon      if {@code true}, worker threads do not prevent JVM from exit
+     * @param callerLimit maximal count of chunks of one {@link #map} call executed at the same time
+     */
+    public ParallelMapperImpl(final int thread, final boolean daemon, final int callerLimit) {
+        this(thread, thread, Duration.ZERO, daemon, callerLimit);
+    }
+
+    /**
+     * Create elastic {@code ParallelMapperImpl}, that runs from {@code minThreads} to {@code maxThreads} threads
+     *
+     * @param minThreads  count of threads kept alive when there is no work
+     * @param maxThreads  maximal count of threads
+     * @param idleTimeout time after which idle thread above {@code minThreads} stops
+     */
+    public ParallelMapperImpl(final int minThreads, final int maxThreads, final Duration idleTimeout) {
+        this(minThreads, maxThreads, idleTimeout, false, maxThreads);
+    }
+
+    /**
+     * Create elastic {@code ParallelMapperImpl}, that runs from {@code minThreads} to {@code maxThreads} threads.
+     * New thread is started when count of waiting {@link #map} calls exceeds count of idle threads.
+     * Chunks of concurrent {@link #map} calls are dispatched in round-robin order.
+     *
+     * @param minThreads  count of threads kept alive when there is no work
+     * @param maxThreads  maximal count of threads
+     * @param idleTimeout time after which idle thread above {@code minThreads} stops
+     * @param daemon      if {@code true}, worker threads do not prevent JVM from exit
+     * @param callerLimit maximal count of chunks of one {@link #map} call executed at the same time
+     */
+    public ParallelMapperImpl(final int minThreads, final int maxThreads, final Duration idleTimeout,
+                              final boolean daemon, final int callerLimit) {
+        if (minThreads < 0 || maxThreads < Math.max(1, minThreads)) {
+            throw new IllegalArgumentException("Invalid thread bounds: " + minThreads + ", " + maxThreads);
+        }
+        if (callerLimit < 1) {
+            throw new IllegalArgumentException("Caller limit must be positive: " + callerLimit);
+        }
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.idleTimeout = idleTimeout.toNanos();
+        this.daemon = daemon;
+        this.callerLimit = callerLimit;
+
+        synchronized (queue) {
+            for (int i = 0; i < minThreads; i++) {
+                startWorker();
             }
-        };
+        }
+    }
 
-        threads = Stream.generate(() -> new Thread(runner))
-                .limit(thread)
-                .peek(Thread::start)
-                .toList();
+    private void startWorker() {
+        final Thread thread = new Thread(this::work);
+        thread.setDaemon(daemon);
+        threads.add(thread);
+        thread.start();
+    }
+
+    private void work() {
+        try {
+            Runnable task;
+            while (!Thread.interrupted() && (task = pollTask()) != null) {
+                task.run();
+            }
+        } catch (final InterruptedException ignored) {
+        }
     }
 
+    /**
+     * Starts new worker, if there are more waiting calls than idle workers.
+     * Should be called under {@code queue} lock.
+     */
+    private void grow() {
+        if (!closed && idle < queue.size() && threads.size() < maxThreads) {
+            startWorker();
+        }
+    }
+
+    /**
+     * Takes next chunk to run.
+     *
+     * @return next chunk or {@code null} if worker was idle for too long and should stop
+     */
     private Runnable pollTask() throws InterruptedException {
         synchronized (queue) {
-            while (queue.isEmpty()) {
-                queue.wait();
+            final long deadline = System.nanoTime() + idleTimeout;
+            idle++;
+            try {
+                while (queue.isEmpty()) {
+                    if (threads.size() > minThreads) {
+                        final long left = deadline - System.nanoTime();
+                        if (left <= 0) {
+                            threads.remove(Thread.currentThread());
+                            return null;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(queue, left);
+                    } else {
+                        queue.wait();
+                    }
+                }
+            } finally {
+                idle--;
+            }
+            final Job<?, ?> job = queue.poll();
+            metrics.waited(System.nanoTime() - job.queuedAt);
+            final Runnable chunk = job.nextChunk();
+            job.queued = false;
+            if (job.canDispatch()) {
+                enqueue(job);
             }
-            final Runnable runnable = queue.poll();
             queue.notifyAll();
-            return runnable;
+            return chunk;
         }
     }
 
+    private void finished(final Job<?, ?> job) {
+        synchronized (queue) {
+            job.inFlight--;
+            if (!job.queued && job.canDispatch()) {
+                enqueue(job);
+                queue.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Adds {@code job} to the tail of queue. Should be called under {@code queue} lock.
+     */
+    private void enqueue(final Job<?, ?> job) {
+        job.queued = true;
+        job.queuedAt = System.nanoTime();
+        queue.add(job);
+        grow();
+    }
+
 
     /**
      * {@inheritDoc}
@@ -53,110 +219,424 @@ public class ParallelMapperImpl implements ParallelMapper {
             final Function<? super T, ? extends R> f,
             final List<? extends T> args
     ) throws InterruptedException {
-        final TaskGroup taskGroup = new TaskGroup(args.size());
-        final List<Task<T, R>> tasks = args
-                .stream()
-                .map(x -> new Task<T, R>(taskGroup, x, f))
-                .toList();
-        for (final var t : tasks) {
-            addToQueue(t);
-        }
-
-        taskGroup.waitAll();
-        RuntimeException exception = null;
-
-        for (final var i : tasks) {
-            final RuntimeException e = i.getException();
-            if (e != null) {
-                if (exception == null) {
-                    exception = e;
+        final List<? extends T> values = randomAccess(args);
+        final Object[] results = new Object[values.size()];
+        final Job<T, R> job = new Job<>(values, f, chunkSize(values.size()), callerLimit,
+                (r, i) -> results[i] = r);
+        addToQueue(job);
+
+        try {
+            job.taskGroup.waitAll();
+        } catch (final InterruptedException e) {
+            cancel(job);
+            throw e;
+        }
+
+        if (job.exception != null) {
+            throw job.exception;
+        }
+
+        return asList(results);
+    }
+
+    /**
+     * Asynchronously applies {@code f} to each of {@code args}.
+     * The caller is blocked only if {@link #MAX_QUEUE_SIZE} calls are already waiting.
+     * Continuations, that are not {@code async}, run on worker threads.
+     * Cancellation of returned future stops dispatching of remaining elements.
+     *
+     * @param f    function to apply
+     * @param args arguments of {@code f}
+     * @param <T>  type of arguments
+     * @param <R>  type of results
+     * @return future list of results in order of {@code args}. Completes exceptionally,
+     * if {@code f} throws, with other exceptions suppressed
+     * @throws InterruptedException if caller was interrupted while waiting for place in queue
+     */
+    public <T, R> CompletableFuture<List<R>> mapAsync(
+            final Function<? super T, ? extends R> f,
+            final List<? extends T> args
+    ) throws InterruptedException {
+        final List<? extends T> values = randomAccess(args);
+        final Object[] results = new Object[values.size()];
+        final Job<T, R> job = new Job<>(values, f, chunkSize(values.size()), callerLimit,
+                (r, i) -> results[i] = r);
+        final CompletableFuture<List<R>> future = job.done.thenApply(ignored -> asList(results));
+        future.whenComplete((r, e) -> {
+            if (future.isCancelled()) {
+                cancel(job);
+            }
+        });
+        addToQueue(job);
+        return future;
+    }
+
+    /**
+     * Creates publisher of results of {@code f} applied to each of {@code args}.
+     * Each subscription runs own {@link #map} call, results are published in order of completion.
+     * Cancellation of subscription stops dispatching of remaining elements.
+     * Slow subscriber holds back workers, that run its chunks, but no more than
+     * {@link #PUBLISHER_CALLER_LIMIT} of them.
+     * Results must not be {@code null}: {@code null} result fails subscription with {@link NullPointerException}.
+     *
+     * @param f    function to apply
+     * @param args arguments of {@code f}
+     * @param <T>  type of arguments
+     * @param <R>  type of results
+     * @return publisher of results
+     */
+    public <T, R> Flow.Publisher<R> mapPublisher(
+            final Function<? super T, ? extends R> f,
+            final List<? extends T> args
+    ) {
+        final List<? extends T> values = randomAccess(args);
+        return subscriber -> {
+            final SubmissionPublisher<R> publisher = new SubmissionPublisher<>();
+            final Job<T, R> job = new Job<>(values, f, chunkSize(values.size()),
+                    Math.min(callerLimit, PUBLISHER_CALLER_LIMIT),
+                    (r, i) -> publisher.submit(Objects.requireNonNull(r, "Published result must not be null")));
+            publisher.subscribe(new CancellingSubscriber<>(subscriber, () -> cancel(job)));
+            job.done.whenComplete((r, e) -> {
+                if (e == null) {
+                    publisher.close();
                 } else {
-                    exception.addSuppressed(e);
+                    publisher.closeExceptionally(e);
                 }
+            });
+            try {
+                addToQueue(job);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                publisher.closeExceptionally(e);
             }
-        }
+        };
+    }
 
-        if (exception != null) {
-            throw exception;
-        }
+    private static <T> List<? extends T> randomAccess(final List<? extends T> args) {
+        return args instanceof RandomAccess ? args : new ArrayList<>(args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> asList(final Object[] results) {
+        return Collections.unmodifiableList(Arrays.asList((R[]) results));
+    }
 
-        return tasks.stream().map(Task::getResult).toList();
+    private int chunkSize(final int size) {
+        return Math.min(MAX_CHUNK_SIZE, Math.max(1, size / (maxThreads * CHUNKS_PER_THREAD)));
     }
 
-    private <T, R> void addToQueue(final Task<T, R> task) throws InterruptedException {
+    private void addToQueue(final Job<?, ?> job) throws InterruptedException {
         synchronized (queue) {
             while (queue.size() > MAX_QUEUE_SIZE) {
                 queue.wait();
             }
-            queue.add(task);
-            queue.notifyAll();
+            metrics.submitted(job.args.size());
+            if (job.canDispatch()) {
+                enqueue(job);
+                queue.notifyAll();
+            } else if (job.args.isEmpty()) {
+                job.done.complete(null);
+            }
+        }
+    }
+
+    private void cancel(final Job<?, ?> job) {
+        synchronized (queue) {
+            job.next = job.args.size();
+            queue.remove(job);
+            job.queued = false;
         }
     }
 
 
+    /**
+     * Returns metrics of this mapper. Metrics are updated while mapper works.
+     *
+     * @return metrics of this mapper
+     */
+    public MapperMetricsMXBean metrics() {
+        return metrics;
+    }
+
+    /**
+     * Registers {@link #metrics()} in platform MBean server. MBean is unregistered by {@link #close()}.
+     *
+     * @param name name of this mapper in {@link ObjectName}
+     * @return name of registered MBean
+     * @throws JMException if registration failed
+     */
+    public ObjectName registerMBean(final String name) throws JMException {
+        final ObjectName objectName = MBeans.register("ParallelMapper", name, metrics);
+        onClose(() -> MBeans.unregister(objectName));
+        return objectName;
+    }
+
+    /**
+     * Makes {@link #close()} run {@code action} after workers are finished, or runs it now, if mapper is closed
+     */
+    void onClose(final Runnable action) {
+        synchronized (queue) {
+            if (!closed) {
+                closeActions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
     /**
      * {@inheritDoc}
+     * <p>
+     * Unregisters MBeans of this mapper.
      */
     @Override
     public void close() {
-        ThreadFinisher.finishThreads(threads);
+        final List<Thread> workers;
+        final List<Runnable> actions;
+        synchronized (queue) {
+            closed = true;
+            workers = List.copyOf(threads);
+            actions = List.copyOf(closeActions);
+            closeActions.clear();
+        }
+        ThreadFinisher.finishThreads(workers);
+        actions.forEach(Runnable::run);
     }
 
+    /**
+     * Countdown of chunks with single waiting thread.
+     * Results written before {@link #decrementAndTest} are visible after {@link #waitAll}.
+     */
     private static final class TaskGroup {
-        private int counter;
+        private final AtomicInteger counter;
+        private volatile Thread waiter;
 
         private TaskGroup(final int expected) {
-            this.counter = expected;
+            this.counter = new AtomicInteger(expected);
         }
 
 
-        private synchronized void decrementAndTest() {
-            if (--counter == 0) {
-                notify();
+        private boolean decrementAndTest() {
+            if (counter.decrementAndGet() == 0) {
+                final Thread thread = waiter;
+                if (thread != null) {
+                    LockSupport.unpark(thread);
+                }
+                return true;
             }
+            return false;
         }
 
-        private synchronized void waitAll() throws InterruptedException {
-            while (counter > 0) {
-                wait();
+        private void waitAll() throws InterruptedException {
+            waiter = Thread.currentThread();
+            try {
+                while (counter.get() > 0) {
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+            } finally {
+                waiter = null;
             }
         }
     }
 
-    private static class Task<T, R> implements Runnable {
-        private final T task;
-        // :NOTE: volatile
-        private R result;
-        private RuntimeException exception;
-        private final TaskGroup taskGroup;
+    /**
+     * Elements of one {@link #map} call, that are handed out to workers by chunks.
+     * Each result is passed to {@code sink} with its index, no more than {@code limit} chunks run at the same time.
+     * Fields {@code next}, {@code inFlight}, {@code queued} and {@code queuedAt} are guarded by {@code queue}.
+     */
+    private final class Job<T, R> {
+        private final List<? extends T> args;
         private final Function<? super T, ? extends R> function;
+        private final ObjIntConsumer<? super R> sink;
+        private final int chunkSize;
+        private final int limit;
+        private final TaskGroup taskGroup;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private int next;
+        private int inFlight;
+        private boolean queued;
+        private long queuedAt;
+        private RuntimeException exception;
 
-        private Task(
-                final TaskGroup taskGroup, final T task,
-                     final Function<? super T, ? extends R> function
-        ) {
-            this.task = task;
-            this.taskGroup = taskGroup;
+        private Job(final List<? extends T> args, final Function<? super T, ? extends R> function,
+                    final int chunkSize, final int limit, final ObjIntConsumer<? super R> sink) {
+            this.args = args;
             this.function = function;
+            this.sink = sink;
+            this.chunkSize = chunkSize;
+            this.limit = limit;
+            this.taskGroup = new TaskGroup((args.size() + chunkSize - 1) / chunkSize);
         }
 
-        @Override
-        public void run() {
+        private boolean canDispatch() {
+            return next < args.size() && inFlight < limit;
+        }
+
+        private Runnable nextChunk() {
+            final int from = next;
+            final int to = Math.min(args.size(), from + chunkSize);
+            next = to;
+            inFlight++;
+            return () -> run(from, to);
+        }
+
+        private void run(final int from, final int to) {
+            final long start = System.nanoTime();
             try {
-                result = function.apply(task);
-            } catch (final RuntimeException e) {
-                exception = e;
+                for (int i = from; i < to; i++) {
+                    try {
+                        sink.accept(function.apply(args.get(i)), i);
+                    } catch (final RuntimeException e) {
+                        addException(e);
+                    }
+                }
             } finally {
-                taskGroup.decrementAndTest();
+                metrics.executed(System.nanoTime() - start);
+                finished(this);
+                if (taskGroup.decrementAndTest()) {
+                    complete();
+                }
             }
         }
 
-        public RuntimeException getException() {
-            return exception;
+        private void complete() {
+            if (exception == null) {
+                done.complete(null);
+            } else {
+                done.completeExceptionally(exception);
+            }
         }
 
-        public R getResult() {
-            return result;
+        private synchronized void addException(final RuntimeException e) {
+            if (exception == null) {
+                exception = e;
+            } else {
+                exception.addSuppressed(e);
+            }
+        }
+    }
+
+    private record CancellingSubscriber<R>(Flow.Subscriber<? super R> subscriber, Runnable onCancel)
+            implements Flow.Subscriber<R> {
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(final long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    subscription.cancel();
+                    onCancel.run();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(final R item) {
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            subscriber.onComplete();
+        }
+    }
+
+    private final class Metrics implements MapperMetricsMXBean {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder elements = new LongAdder();
+        private final LongAdder chunks = new LongAdder();
+        private final LongAdder waitTime = new LongAdder();
+        private final LongAccumulator maxWaitTime = new LongAccumulator(Math::max, 0);
+        private final LongAdder executionTime = new LongAdder();
+
+        private void submitted(final int size) {
+            calls.increment();
+            elements.add(size);
+        }
+
+        private void waited(final long time) {
+            waitTime.add(time);
+            maxWaitTime.accumulate(time);
+        }
+
+        private void executed(final long time) {
+            chunks.increment();
+            executionTime.add(time);
+        }
+
+        @Override
+        public int getQueueDepth() {
+            synchronized (queue) {
+                return queue.size();
+            }
+        }
+
+        @Override
+        public int getWorkerCount() {
+            synchronized (queue) {
+                return threads.size();
+            }
+        }
+
+        @Override
+        public int getBusyWorkerCount() {
+            synchronized (queue) {
+                return threads.size() - idle;
+            }
+        }
+
+        @Override
+        public double getUtilization() {
+            synchronized (queue) {
+                return MBeans.ratio(threads.size() - idle, threads.size());
+            }
+        }
+
+        @Override
+        public long getCallCount() {
+            return calls.sum();
+        }
+
+        @Override
+        public long getElementCount() {
+            return elements.sum();
+        }
+
+        @Override
+        public long getChunkCount() {
+            return chunks.sum();
+        }
+
+        @Override
+        public double getAverageWaitTimeNanos() {
+            return MBeans.ratio(waitTime.sum(), chunks.sum());
+        }
+
+        @Override
+        public long getMaxWaitTimeNanos() {
+            return maxWaitTime.get();
+        }
+
+        @Override
+        public double getAverageExecutionTimeNanos() {
+            return MBeans.ratio(executionTime.sum(), chunks.sum());
+        }
+
+        @Override
+        public long getBusyTimeNanos() {
+            return executionTime.sum();
         }
     }
 
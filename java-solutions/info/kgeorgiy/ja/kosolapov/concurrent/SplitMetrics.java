@@ -0,0 +1,55 @@
+package info.kgeorgiy.ja.kosolapov.concurrent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+class SplitMetrics implements SplitMetricsMXBean {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder elements = new LongAdder();
+    private final LongAdder chunkTime = new LongAdder();
+    private final LongAdder slowestTime = new LongAdder();
+    private final LongAdder averageTime = new LongAdder();
+
+    void record(final int size, final int chunkCount, final long[] times) {
+        if (times.length == 0) {
+            return;
+        }
+        long sum = 0;
+        long max = 0;
+        for (final long time : times) {
+            sum += time;
+            max = Math.max(max, time);
+        }
+        calls.increment();
+        chunks.add(chunkCount);
+        elements.add(size);
+        chunkTime.add(sum);
+        slowestTime.add(max);
+        averageTime.add(sum / times.length);
+    }
+
+    @Override
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getChunkCount() {
+        return chunks.sum();
+    }
+
+    @Override
+    public long getElementCount() {
+        return elements.sum();
+    }
+
+    @Override
+    public double getAverageChunkTimeNanos() {
+        return MBeans.ratio(chunkTime.sum(), chunks.sum());
+    }
+
+    @Override
+    public double getImbalance() {
+        return MBeans.ratio(slowestTime.sum(), averageTime.sum());
+    }
+}
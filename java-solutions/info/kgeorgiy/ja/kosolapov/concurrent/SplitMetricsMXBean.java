@@ -0,0 +1,32 @@
+package info.kgeorgiy.ja.kosolapov.concurrent;
+
+/**
+ * Metrics of chunks produced by {@link IterativeParallelism}. Times are measured in nanoseconds.
+ */
+public interface SplitMetricsMXBean {
+    /**
+     * @return total count of split calls
+     */
+    long getCallCount();
+
+    /**
+     * @return total count of chunks
+     */
+    long getChunkCount();
+
+    /**
+     * @return total count of elements in chunks
+     */
+    long getElementCount();
+
+    /**
+     * @return average time of chunk execution
+     */
+    double getAverageChunkTimeNanos();
+
+    /**
+     * @return sum of slowest thread times divided by sum of average thread times over all calls.
+     * {@code 1.0} means that threads of each call were busy for equal time
+     */
+    double getImbalance();
+}
@@ -0,0 +1,84 @@
+package info.kgeorgiy.ja.kosolapov.concurrent;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Strategy of splitting list into chunks for {@link IterativeParallelism}.
+ * Threads claim chunks one by one until all chunks are processed.
+ * <p>
+ * Splitter depends only on size of list, so one splitter serves lists of any type.
+ * Splitting by cost of elements is chosen per call, see {@link #byCost}.
+ */
+@FunctionalInterface
+public interface Splitter {
+    /**
+     * Split list of {@code size} elements into non-empty chunks to run on {@code threads} threads
+     *
+     * @param threads count of threads
+     * @param size    size of list that will be split
+     * @return borders of chunks, increasing from {@code 0} to {@code size}
+     */
+    int[] borders(int threads, int size);
+
+    /**
+     * Creates splitter, that makes one chunk per thread with size difference no more than one
+     *
+     * @return equal splitter
+     */
+    static Splitter equal() {
+        return (threads, size) -> equalBorders(Math.min(threads, size), size);
+    }
+
+    /**
+     * Creates splitter, that makes {@code chunksPerThread} equal chunks per thread.
+     * Threads, that finish their chunks early, take chunks left by slower threads.
+     *
+     * @param chunksPerThread expected count of chunks per thread
+     * @return dynamic splitter
+     */
+    static Splitter dynamic(final int chunksPerThread) {
+        if (chunksPerThread < 1) {
+            throw new IllegalArgumentException("Count of chunks per thread must be positive: " + chunksPerThread);
+        }
+        return (threads, size) -> equalBorders((int) Math.min(size, (long) threads * chunksPerThread), size);
+    }
+
+    /**
+     * Split {@code values} into one chunk per thread with close total {@code cost} of elements
+     *
+     * @param threads count of threads
+     * @param values  list that will be split
+     * @param cost    estimated cost of processing element, negative costs are treated as zero
+     * @param <T>     type of list elements
+     * @return borders of chunks, increasing from {@code 0} to {@code values.size()}
+     */
+    static <T> int[] byCost(final int threads, final List<? extends T> values, final ToLongFunction<? super T> cost) {
+        final int size = values.size();
+        final int count = Math.min(threads, size);
+        long total = 0;
+        for (final T value : values) {
+            total += Math.max(0, cost.applyAsLong(value));
+        }
+
+        final int[] borders = new int[count + 1];
+        borders[count] = size;
+        long prefix = 0;
+        int chunk = 1;
+        for (int i = 0; chunk < count; i++) {
+            prefix += Math.max(0, cost.applyAsLong(values.get(i)));
+            if ((double) prefix * count >= (double) total * chunk || size - i - 1 == count - chunk) {
+                borders[chunk++] = i + 1;
+            }
+        }
+        return borders;
+    }
+
+    private static int[] equalBorders(final int count, final int size) {
+        final int[] borders = new int[count + 1];
+        for (int i = 1; i <= count; i++) {
+            borders[i] = Math.min(i, size % count) + i * (size / count);
+        }
+        return borders;
+    }
+}
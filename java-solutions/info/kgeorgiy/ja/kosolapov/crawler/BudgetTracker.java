@@ -0,0 +1,148 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.URLUtils;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spending of {@link CrawlBudget} by one crawl.
+ * After budget is exhausted, downloads are not started, and, unless page limit was reached,
+ * running downloads are interrupted and their results are dropped.
+ */
+class BudgetTracker {
+    private final CrawlBudget budget;
+    private final boolean hasDeadline;
+    private final long deadline;
+    private final AtomicLong pages = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final Map<String, AtomicInteger> hostPages = new ConcurrentHashMap<>();
+    private final Set<Thread> running = new HashSet<>();
+    private volatile CrawlOutcome.Reason reason;
+    private volatile boolean cancelled;
+
+    BudgetTracker(CrawlBudget budget) {
+        this.budget = budget;
+        this.hasDeadline = budget.maxTime() != null;
+        this.deadline = hasDeadline ? System.nanoTime() + budget.maxTime().toNanos() : 0;
+    }
+
+    /**
+     * Downloads {@code url} by {@code crawler}, if budget allows
+     *
+     * @return downloaded document, or {@code null} if page is skipped or its download was cancelled
+     * @throws IOException if download failed
+     */
+    Document download(WebCrawler crawler, String url) throws IOException {
+        if (!start(url)) {
+            return null;
+        }
+        try {
+            Document document = crawler.downloadPage(url);
+            if (document instanceof SizedDocument sized && bytes.addAndGet(sized.size()) > budget.maxBytes()) {
+                stop(CrawlOutcome.Reason.MAX_BYTES);
+                return null;
+            }
+            return cancelled ? null : document;
+        } catch (IOException e) {
+            if (cancelled) {
+                return null;
+            }
+            throw e;
+        } finally {
+            finish();
+        }
+    }
+
+    private boolean start(String url) {
+        if (isStopped()) {
+            return false;
+        }
+        if (hasDeadline && System.nanoTime() - deadline >= 0) {
+            stop(CrawlOutcome.Reason.DEADLINE);
+            return false;
+        }
+        if (budget.maxPagesPerHost() != Integer.MAX_VALUE && !takeHostPage(url)) {
+            return false;
+        }
+        if (pages.incrementAndGet() > budget.maxPages()) {
+            stop(CrawlOutcome.Reason.MAX_PAGES);
+            return false;
+        }
+        synchronized (running) {
+            if (cancelled) {
+                return false;
+            }
+            running.add(Thread.currentThread());
+        }
+        return true;
+    }
+
+    private boolean takeHostPage(String url) {
+        try {
+            AtomicInteger count = hostPages.computeIfAbsent(URLUtils.getHost(url), host -> new AtomicInteger());
+            return count.incrementAndGet() <= budget.maxPagesPerHost();
+        } catch (MalformedURLException e) {
+            return true;
+        }
+    }
+
+    private void finish() {
+        synchronized (running) {
+            running.remove(Thread.currentThread());
+            // Clears interruption by cancel, thread returns to pool
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Stops crawl with {@code reason}, if it is not stopped yet
+     */
+    void stop(CrawlOutcome.Reason reason) {
+        synchronized (running) {
+            if (this.reason != null) {
+                return;
+            }
+            this.reason = reason;
+            if (reason != CrawlOutcome.Reason.MAX_PAGES) {
+                cancelled = true;
+                running.forEach(Thread::interrupt);
+            }
+        }
+    }
+
+    boolean isStopped() {
+        return reason != null;
+    }
+
+    CrawlOutcome.Reason reason() {
+        return reason == null ? CrawlOutcome.Reason.COMPLETED : reason;
+    }
+
+    /**
+     * Finishes task of owner of {@code work} and waits for other tasks, stopping crawl at deadline or interruption.
+     * After interruption waits for running tasks too, so no pages are reported after return.
+     */
+    void await(WorkCounter work) throws InterruptedException {
+        work.arrive();
+        try {
+            if (!hasDeadline) {
+                work.await();
+            } else if (!work.await(Math.max(0, deadline - System.nanoTime()))) {
+                stop(CrawlOutcome.Reason.DEADLINE);
+                work.await();
+            }
+        } catch (InterruptedException e) {
+            stop(CrawlOutcome.Reason.INTERRUPTED);
+            work.awaitUninterruptibly();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import java.time.Duration;
+
+/**
+ * Limits of one crawl. Downloads of pages are counted when they start, including failed ones.
+ *
+ * @param maxPages        maximal count of downloaded pages
+ * @param maxBytes        maximal total size of downloaded pages, only {@link SizedDocument sized documents} are counted
+ * @param maxTime         maximal duration of crawl, or {@code null} for no limit
+ * @param maxPagesPerHost maximal count of downloaded pages of one host, other pages of the host are skipped
+ */
+public record CrawlBudget(long maxPages, long maxBytes, Duration maxTime, int maxPagesPerHost) {
+    /**
+     * @return budget without limits
+     */
+    public static CrawlBudget unlimited() {
+        return new CrawlBudget(Long.MAX_VALUE, Long.MAX_VALUE, null, Integer.MAX_VALUE);
+    }
+
+    public CrawlBudget withMaxPages(long maxPages) {
+        return new CrawlBudget(maxPages, maxBytes, maxTime, maxPagesPerHost);
+    }
+
+    public CrawlBudget withMaxBytes(long maxBytes) {
+        return new CrawlBudget(maxPages, maxBytes, maxTime, maxPagesPerHost);
+    }
+
+    public CrawlBudget withMaxTime(Duration maxTime) {
+        return new CrawlBudget(maxPages, maxBytes, maxTime, maxPagesPerHost);
+    }
+
+    public CrawlBudget withMaxPagesPerHost(int maxPagesPerHost) {
+        return new CrawlBudget(maxPages, maxBytes, maxTime, maxPagesPerHost);
+    }
+}
@@ -0,0 +1,30 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+
+import java.io.IOException;
+
+/**
+ * Receives results of {@link WebCrawler#download(String, int, CrawlListener)} as soon as they are known.
+ * <p>
+ * Methods are called concurrently from downloading threads. Download slot of the page stays occupied
+ * until the call returns, so listener that blocks slows the crawl down instead of buffering pages in memory.
+ * Listener that does not need back-pressure should return quickly, e.g. by handing work to its own executor.
+ */
+public interface CrawlListener {
+    /**
+     * Called once for each downloaded page
+     *
+     * @param url      url of the page
+     * @param document downloaded document
+     */
+    void downloaded(String url, Document document);
+
+    /**
+     * Called once for each page that can not be downloaded
+     *
+     * @param url       url of the page
+     * @param exception cause of failure
+     */
+    void failed(String url, IOException exception);
+}
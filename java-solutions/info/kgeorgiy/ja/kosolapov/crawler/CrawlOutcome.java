@@ -0,0 +1,37 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Result;
+
+/**
+ * Result of crawl with {@link CrawlBudget}
+ *
+ * @param result downloaded pages and errors, partial if crawl was stopped
+ * @param reason why crawl ended
+ */
+public record CrawlOutcome(Result result, Reason reason) {
+    /**
+     * Reason of end of crawl
+     */
+    public enum Reason {
+        /**
+         * All pages up to depth were crawled, skipping pages over per-host limit
+         */
+        COMPLETED,
+        /**
+         * Page limit was reached. Downloads, that started before, were completed.
+         */
+        MAX_PAGES,
+        /**
+         * Byte limit was reached. Running downloads were cancelled.
+         */
+        MAX_BYTES,
+        /**
+         * Time limit was reached. Running downloads were cancelled.
+         */
+        DEADLINE,
+        /**
+         * Calling thread was interrupted. Running downloads were cancelled.
+         */
+        INTERRUPTED
+    }
+}
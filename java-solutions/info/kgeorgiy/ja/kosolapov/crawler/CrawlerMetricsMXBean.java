@@ -0,0 +1,104 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import java.util.Map;
+
+/**
+ * Metrics of {@link WebCrawler}. Times are measured in nanoseconds.
+ * <p>
+ * Crawl is limited by downloader threads, if {@link #getReadyHostCount() ready hosts} wait for free slot
+ * while {@link #getDownloadUtilization() download utilization} is high; by hosts, if most queued downloads
+ * belong to {@link #getLimitedHostCount() limited hosts}; and by extractors, if
+ * {@link #getQueuedExtractions() extractions queue up}.
+ */
+public interface CrawlerMetricsMXBean {
+    /**
+     * @return total count of downloaded pages
+     */
+    long getDownloadedCount();
+
+    /**
+     * @return total count of pages, that failed to download
+     */
+    long getFailedCount();
+
+    /**
+     * @return total count of pages, links were extracted from
+     */
+    long getExtractedCount();
+
+    /**
+     * @return average count of downloaded pages per second since creation of crawler
+     */
+    double getPagesPerSecond();
+
+    /**
+     * @return count of running downloads
+     */
+    int getInFlightDownloads();
+
+    /**
+     * @return count of downloads waiting to start
+     */
+    int getQueuedDownloads();
+
+    /**
+     * @return part of global limit of running downloads, that is used
+     */
+    double getDownloadUtilization();
+
+    /**
+     * @return count of hosts, that are allowed to start download and wait only for global limit
+     */
+    int getReadyHostCount();
+
+    /**
+     * @return count of hosts with queued downloads, that wait for their own concurrency, delay or rate limit
+     */
+    int getLimitedHostCount();
+
+    /**
+     * @return count of running link extractions
+     */
+    int getInFlightExtractions();
+
+    /**
+     * @return count of link extractions waiting for extractor
+     */
+    int getQueuedExtractions();
+
+    /**
+     * @return part of extractors, that extract links
+     */
+    double getExtractorUtilization();
+
+    /**
+     * @return average time of download of one page
+     */
+    double getAverageDownloadTimeNanos();
+
+    /**
+     * @return average time between scheduling of download and its start
+     */
+    double getAverageQueueWaitTimeNanos();
+
+    /**
+     * @return maximal time between scheduling of download and its start
+     */
+    long getMaxQueueWaitTimeNanos();
+
+    /**
+     * @return average time of link extraction task
+     */
+    double getAverageExtractionTimeNanos();
+
+    /**
+     * @return upper bounds of buckets of {@link #getHostLatencyHistograms() latency histograms},
+     * the last bucket is unbounded
+     */
+    long[] getLatencyBucketBoundsNanos();
+
+    /**
+     * @return counts of downloads of each host by buckets of download time
+     */
+    Map<String, long[]> getHostLatencyHistograms();
+}
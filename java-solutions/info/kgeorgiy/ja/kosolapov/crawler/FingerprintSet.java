@@ -0,0 +1,92 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+/**
+ * Set of strings, that keeps only 64-bit fingerprints of them.
+ * Takes about 16 bytes per element, different strings are considered equal
+ * with probability about {@code size / 2^64}.
+ * <p>
+ * Fingerprints are split between independently locked segments, so threads rarely wait for each other.
+ */
+class FingerprintSet {
+    private static final int SEGMENTS = 64;
+    private static final int INITIAL_CAPACITY = 1 << 6;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    FingerprintSet() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Adds {@code value} to set
+     *
+     * @param value value to add
+     * @return {@code true} if set did not contain {@code value}
+     */
+    public boolean add(String value) {
+        long fingerprint = fingerprint(value);
+        return segments[(int) (fingerprint >>> 58)].add(fingerprint);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private static final class Segment {
+        private long[] table = new long[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized boolean add(long fingerprint) {
+            if (!insert(table, fingerprint)) {
+                return false;
+            }
+            if (++size * 2 > table.length) {
+                long[] old = table;
+                table = new long[old.length * 2];
+                for (long element : old) {
+                    if (element != 0) {
+                        insert(table, element);
+                    }
+                }
+            }
+            return true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+    }
+
+    private static boolean insert(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+            if (table[i] == fingerprint) {
+                return false;
+            }
+            if (table[i] == 0) {
+                table[i] = fingerprint;
+                return true;
+            }
+        }
+    }
+
+    private static long fingerprint(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53a87cbL;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,95 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Queue of URLs of one crawl level. Keeps up to {@code hotLimit} URLs in memory,
+ * the rest is spilled to segment files in {@code directory}.
+ */
+class Frontier implements Closeable {
+    private final Path directory;
+    private final int hotLimit;
+    private final Queue<Path> segments = new ArrayDeque<>();
+    private List<String> hot = new ArrayList<>();
+
+    /**
+     * Creates frontier.
+     *
+     * @param directory directory for segment files or {@code null} to keep all URLs in memory
+     * @param hotLimit  maximal count of URLs kept in memory, if {@code directory} is set
+     */
+    Frontier(Path directory, int hotLimit) {
+        this.directory = directory;
+        this.hotLimit = hotLimit;
+    }
+
+    public synchronized void addAll(Collection<String> urls) throws IOException {
+        hot.addAll(urls);
+        if (directory != null && hot.size() >= hotLimit) {
+            spill();
+        }
+    }
+
+    private void spill() throws IOException {
+        Path segment = Files.createTempFile(directory, "frontier", ".txt");
+        segments.add(segment);
+        try (BufferedWriter writer = Files.newBufferedWriter(segment, StandardCharsets.UTF_8)) {
+            for (String url : hot) {
+                writer.write(url);
+                writer.newLine();
+            }
+        }
+        hot = new ArrayList<>();
+    }
+
+    /**
+     * Passes all URLs to {@code visitor} and removes them from frontier.
+     * Should not be called concurrently with {@link #addAll}.
+     *
+     * @param visitor visitor of URLs
+     * @throws IOException          if segment file can not be read
+     * @throws InterruptedException if {@code visitor} was interrupted
+     */
+    public void drain(Visitor visitor) throws IOException, InterruptedException {
+        Path segment;
+        while ((segment = segments.poll()) != null) {
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String url;
+                while ((url = reader.readLine()) != null) {
+                    visitor.visit(url);
+                }
+            } finally {
+                Files.deleteIfExists(segment);
+            }
+        }
+        List<String> urls = hot;
+        hot = new ArrayList<>();
+        for (String url : urls) {
+            visitor.visit(url);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Path segment;
+        while ((segment = segments.poll()) != null) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    @FunctionalInterface
+    interface Visitor {
+        void visit(String url) throws InterruptedException;
+    }
+}
@@ -0,0 +1,319 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Scheduler of downloads, that respects limits per host and global limit of running downloads.
+ * Tasks have scores. Each host starts its tasks in order of decreasing score, and from hosts,
+ * that have tasks ready to start, the one with the best next task is served.
+ * Tasks and hosts with equal score are served in order of arrival, so hosts with equal scores
+ * are served in round-robin order.
+ * Per host, it limits count of running tasks, minimal delay between starts and rate of starts.
+ * Rate is limited by token bucket, that allows bursts of one second of requests.
+ * <p>
+ * Adaptive scheduler changes count of running tasks of each host from one to {@code perHost} by AIMD,
+ * judging finished tasks of host by windows of {@code max(}{@link #MIN_WINDOW}{@code , limit)} tasks,
+ * and error ends window at once. After window with error or with average time {@link #SLOW_FACTOR} times
+ * greater than usual for the host, limit is halved, and tasks started before decrease are not judged.
+ * Until the first decrease limit grows by one after each successful task, so it doubles per {@code limit} tasks,
+ * after it limit grows by one after each window.
+ * Usual time of host is moving average of times of windows, measured by successful tasks only,
+ * so spread of times of single tasks, that does not depend on load, does not decrease limit.
+ */
+class HostScheduler {
+    private static final int SLOW_FACTOR = 2;
+    /**
+     * Minimal count of tasks in window, so average time of window is not dominated by single task
+     */
+    private static final int MIN_WINDOW = 8;
+    /**
+     * Usual time of host moves by this part of difference with average time of each window
+     */
+    private static final int BASELINE_DRIFT = 8;
+
+    private final Executor executor;
+    private final int globalLimit;
+    private final int perHost;
+    private final double rate;
+    private final long minDelay;
+    private final boolean adaptive;
+    private final ScheduledExecutorService timer;
+
+    private final Map<String, HostTasks> hosts = new HashMap<>();
+    private final Queue<HostTasks> ready = new PriorityQueue<>(
+            Comparator.<HostTasks>comparingDouble(hostTasks -> -hostTasks.readyScore)
+                    .thenComparingLong(hostTasks -> hostTasks.readySequence)
+    );
+    private final LongAdder waitTime = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAccumulator maxWaitTime = new LongAccumulator(Math::max, 0);
+    private int inFlight;
+    private int queued;
+    private long sequence;
+
+    /**
+     * Creates scheduler.
+     *
+     * @param executor    executor to run tasks on
+     * @param globalLimit maximal count of running tasks
+     * @param perHost     maximal count of running tasks of one host
+     * @param rate        maximal count of task starts per second for one host or {@code 0} for no limit
+     * @param minDelay    minimal time between task starts of one host, in nanoseconds
+     * @param adaptive    whether to adapt count of running tasks of each host to its responses
+     */
+    HostScheduler(Executor executor, int globalLimit, int perHost, double rate, long minDelay, boolean adaptive) {
+        this.executor = executor;
+        this.globalLimit = globalLimit;
+        this.perHost = perHost;
+        this.rate = rate;
+        this.minDelay = minDelay;
+        this.adaptive = adaptive;
+        this.timer = rate > 0 || minDelay > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "host-scheduler-timer");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Schedules {@code task} of {@code host}
+     *
+     * @param host  host of task
+     * @param task  task to run
+     * @param score score of task, tasks with greater score start first
+     */
+    public synchronized void submit(String host, Runnable task, double score) {
+        HostTasks hostTasks = hosts.computeIfAbsent(host, x -> new HostTasks());
+        hostTasks.tasks.add(new Task(task, System.nanoTime(), score, sequence++));
+        queued++;
+        if (hostTasks.ready && score > hostTasks.readyScore) {
+            ready.remove(hostTasks);
+            hostTasks.readyScore = score;
+            ready.add(hostTasks);
+        }
+        activate(hostTasks);
+        dispatch();
+    }
+
+    private synchronized void finished(HostTasks hostTasks) {
+        hostTasks.inFlight--;
+        inFlight--;
+        activate(hostTasks);
+        dispatch();
+    }
+
+    /**
+     * Reports result of task of {@code host} to adaptive scheduler
+     *
+     * @param host    host of task
+     * @param time    time of task in nanoseconds
+     * @param success whether task succeeded
+     */
+    void feedback(String host, long time, boolean success) {
+        if (!adaptive) {
+            return;
+        }
+        synchronized (this) {
+            HostTasks hostTasks = hosts.get(host);
+            if (hostTasks != null) {
+                hostTasks.feedback(time, success);
+                activate(hostTasks);
+                dispatch();
+            }
+        }
+    }
+
+    /**
+     * Moves start of last task to the moment it actually started on executor,
+     * so delays between starts are not shortened by queueing in executor.
+     */
+    private synchronized void started(HostTasks hostTasks) {
+        hostTasks.lastStart = Math.max(hostTasks.lastStart, System.nanoTime());
+    }
+
+    private synchronized void wakeUp(HostTasks hostTasks) {
+        hostTasks.waiting = false;
+        activate(hostTasks);
+        dispatch();
+    }
+
+    /**
+     * Adds {@code hostTasks} to ready hosts or schedules it for later, if it has task to start.
+     */
+    private void activate(HostTasks hostTasks) {
+        if (hostTasks.ready || hostTasks.waiting || hostTasks.tasks.isEmpty()
+                || hostTasks.inFlight >= hostTasks.limit) {
+            return;
+        }
+        long delay = hostTasks.startTime(System.nanoTime()) - System.nanoTime();
+        if (delay > 0) {
+            hostTasks.waiting = true;
+            timer.schedule(() -> wakeUp(hostTasks), delay, TimeUnit.NANOSECONDS);
+        } else {
+            hostTasks.ready = true;
+            hostTasks.readyScore = hostTasks.tasks.element().score;
+            hostTasks.readySequence = sequence++;
+            ready.add(hostTasks);
+        }
+    }
+
+    private void dispatch() {
+        while (inFlight < globalLimit && !ready.isEmpty()) {
+            HostTasks hostTasks = ready.poll();
+            hostTasks.ready = false;
+            Task task = hostTasks.tasks.poll();
+            long now = System.nanoTime();
+            waitTime.add(now - task.submitted);
+            maxWaitTime.accumulate(now - task.submitted);
+            started.increment();
+            hostTasks.start(now);
+            queued--;
+            inFlight++;
+            executor.execute(() -> {
+                if (timer != null) {
+                    started(hostTasks);
+                }
+                try {
+                    task.runnable.run();
+                } finally {
+                    finished(hostTasks);
+                }
+            });
+            activate(hostTasks);
+        }
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int queued() {
+        return queued;
+    }
+
+    synchronized int readyHosts() {
+        return ready.size();
+    }
+
+    /**
+     * @return count of hosts, that have queued tasks, but can not start them because of their own limits
+     */
+    synchronized int limitedHosts() {
+        int limited = 0;
+        for (HostTasks hostTasks : hosts.values()) {
+            if (!hostTasks.ready && !hostTasks.tasks.isEmpty()) {
+                limited++;
+            }
+        }
+        return limited;
+    }
+
+    double averageWaitTime() {
+        long count = started.sum();
+        return count == 0 ? 0 : (double) waitTime.sum() / count;
+    }
+
+    long maxWaitTime() {
+        return maxWaitTime.get();
+    }
+
+    /**
+     * Stops timer of delayed hosts
+     */
+    public void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    private record Task(Runnable runnable, long submitted, double score, long sequence) {
+    }
+
+    private class HostTasks {
+        private final Queue<Task> tasks = new PriorityQueue<>(
+                Comparator.comparingDouble((Task task) -> -task.score).thenComparingLong(Task::sequence)
+        );
+        private double readyScore;
+        private long readySequence;
+        private int inFlight;
+        private boolean ready;
+        private boolean waiting;
+        private long lastStart = Long.MIN_VALUE;
+        private double tokens = Math.max(1, rate);
+        private long lastRefill = System.nanoTime();
+        private int limit = adaptive ? 1 : perHost;
+        private boolean slowStart = true;
+        private double baseline = -1;
+        /**
+         * Count of finished tasks, that were started before last decrease of limit
+         */
+        private int skipped;
+        private int windowTasks;
+        private int windowSuccesses;
+        private long windowTime;
+
+        private void feedback(long time, boolean success) {
+            if (skipped > 0) {
+                skipped--;
+                return;
+            }
+            windowTasks++;
+            if (success) {
+                windowSuccesses++;
+                windowTime += time;
+                if (slowStart) {
+                    limit = Math.min(perHost, limit + 1);
+                }
+                if (windowTasks < Math.max(MIN_WINDOW, limit)) {
+                    return;
+                }
+            }
+            double average = windowSuccesses > 0 ? (double) windowTime / windowSuccesses : -1;
+            if (windowSuccesses < windowTasks || baseline >= 0 && average > SLOW_FACTOR * baseline) {
+                limit = Math.max(1, limit / 2);
+                slowStart = false;
+                // Current task is still in flight
+                skipped = inFlight - 1;
+            } else if (!slowStart) {
+                limit = Math.min(perHost, limit + 1);
+            }
+            if (average >= 0) {
+                baseline = baseline < 0 ? average : baseline + (average - baseline) / BASELINE_DRIFT;
+            }
+            windowTasks = 0;
+            windowSuccesses = 0;
+            windowTime = 0;
+        }
+
+        private long startTime(long now) {
+            long time = lastStart == Long.MIN_VALUE ? now : Math.max(now, lastStart + minDelay);
+            if (rate > 0) {
+                refill(now);
+                if (tokens < 1) {
+                    time = Math.max(time, now + (long) Math.ceil((1 - tokens) / rate * 1e9));
+                }
+            }
+            return time;
+        }
+
+        private void start(long now) {
+            inFlight++;
+            lastStart = now;
+            if (rate > 0) {
+                refill(now);
+                tokens--;
+            }
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(Math.max(1, rate), tokens + (now - lastRefill) * rate / 1e9);
+            lastRefill = now;
+        }
+    }
+}
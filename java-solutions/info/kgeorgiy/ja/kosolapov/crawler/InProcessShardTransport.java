@@ -0,0 +1,31 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transport between shards in one JVM, that delivers messages in thread of sender.
+ */
+public class InProcessShardTransport implements ShardTransport {
+    private final Map<Integer, Receiver> receivers = new ConcurrentHashMap<>();
+
+    @Override
+    public void register(int shard, Receiver receiver) {
+        receivers.put(shard, receiver);
+    }
+
+    @Override
+    public void send(int shard, long crawl, String url, int depth) throws IOException {
+        Receiver receiver = receivers.get(shard);
+        if (receiver == null) {
+            throw new IOException("Unknown shard " + shard);
+        }
+        receiver.receive(crawl, url, depth);
+    }
+
+    @Override
+    public void close() {
+        receivers.clear();
+    }
+}
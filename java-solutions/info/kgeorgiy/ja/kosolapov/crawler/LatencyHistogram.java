@@ -0,0 +1,37 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of times with buckets of exponentially growing width: up to 1 ms, 2 ms, 4 ms and so on.
+ */
+class LatencyHistogram {
+    private static final int BOUNDED_BUCKETS = 17;
+    private static final long FIRST_BOUND = 1_000_000;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDED_BUCKETS + 1);
+
+    void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUNDED_BUCKETS && nanos > FIRST_BOUND << bucket) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+    }
+
+    long[] counts() {
+        long[] result = new long[counts.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    static long[] bounds() {
+        long[] bounds = new long[BOUNDED_BUCKETS];
+        for (int i = 0; i < BOUNDED_BUCKETS; i++) {
+            bounds[i] = FIRST_BOUND << i;
+        }
+        return bounds;
+    }
+}
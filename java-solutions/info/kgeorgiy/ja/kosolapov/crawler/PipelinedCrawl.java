@@ -0,0 +1,241 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Result;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One crawl without level barriers. Each page remembers the greatest remaining depth it was reached with.
+ * If page is reached again with greater depth, its links are visited again with that depth,
+ * so pages and errors are the same as in level-by-level crawl.
+ * <p>
+ * Crawl from several start pages keeps links of all pages, so result of each start page
+ * can be found after crawl without downloading pages again.
+ * <p>
+ * In sharded crawl pages of other shards are passed to {@link Forwarder}, and pages of this shard
+ * come from other shards to {@link #accept}. All shards of one crawl count their tasks by one {@link WorkCounter}.
+ */
+class PipelinedCrawl {
+    private final WebCrawler crawler;
+    private final Map<String, Page> pages = new ConcurrentHashMap<>();
+    private final CrawlListener listener;
+    private final BudgetTracker budget;
+    private final Forwarder forwarder;
+    private final WorkCounter work;
+    private volatile int maxDepth;
+
+    PipelinedCrawl(WebCrawler crawler, CrawlListener listener, BudgetTracker budget) {
+        this(crawler, listener, budget, new WorkCounter(), (url, depth) -> false);
+    }
+
+    PipelinedCrawl(WebCrawler crawler, CrawlListener listener, BudgetTracker budget, WorkCounter work,
+                   Forwarder forwarder) {
+        this.crawler = crawler;
+        this.listener = listener;
+        this.budget = budget;
+        this.work = work;
+        this.forwarder = forwarder;
+    }
+
+    void run(String url, int depth) throws InterruptedException {
+        maxDepth = depth - 1;
+        visit(crawler.normalize(url), depth);
+        budget.await(work);
+    }
+
+    /**
+     * Crawls from each of {@code depths} keys with its depth, downloading each page once
+     */
+    void runAll(Map<String, Integer> depths) throws InterruptedException {
+        maxDepth = Integer.MAX_VALUE;
+        depths.forEach((url, depth) -> visit(crawler.normalize(url), depth));
+        budget.await(work);
+    }
+
+    /**
+     * Starts shard of crawl with {@code depth}, pages are passed by {@link #accept}
+     */
+    void start(int depth) {
+        maxDepth = depth - 1;
+    }
+
+    /**
+     * Schedules visit of normalized {@code url} of this shard with remaining {@code depth} on extraction thread,
+     * so caller is not blocked by passing pages to other shards. Visit is counted as task before return.
+     */
+    void accept(String url, int depth) {
+        work.register();
+        crawler.submitExtraction(() -> {
+            try {
+                visit(url, depth);
+            } finally {
+                work.arrive();
+            }
+        });
+    }
+
+    /**
+     * Returns pages and errors of level-by-level crawl from {@code url} with {@code depth},
+     * that was part of {@link #runAll}
+     */
+    Result result(String url, int depth) {
+        List<String> downloaded = new ArrayList<>();
+        Map<String, IOException> errors = new HashMap<>();
+        String start = crawler.normalize(url);
+        Set<String> seen = new HashSet<>(List.of(start));
+        List<String> level = List.of(start);
+        for (int i = depth; i > 0 && !level.isEmpty(); i--) {
+            List<String> next = new ArrayList<>();
+            for (String link : level) {
+                Page page = pages.get(link);
+                if (page.error != null) {
+                    errors.put(link, page.error);
+                    continue;
+                }
+                downloaded.add(link);
+                if (i > 1) {
+                    for (String child : page.links) {
+                        if (seen.add(child)) {
+                            next.add(child);
+                        }
+                    }
+                }
+            }
+            level = next;
+        }
+        return new Result(downloaded, errors);
+    }
+
+    private void visit(String url, int depth) {
+        if (depth <= 0 || budget.isStopped() || forwarder.forward(url, depth)) {
+            return;
+        }
+        List<String> links = null;
+        Page page = pages.computeIfAbsent(url, Page::new);
+        synchronized (page) {
+            if (depth <= page.depth) {
+                return;
+            }
+            page.depth = depth;
+            switch (page.state) {
+                case NEW -> {
+                    page.state = State.DOWNLOADING;
+                    submitDownload(page);
+                }
+                case DOWNLOADED -> {
+                    if (depth > 1) {
+                        page.state = State.EXTRACTING;
+                        submitExtraction(page);
+                    }
+                }
+                case EXTRACTED -> links = page.links;
+                default -> {
+                }
+            }
+        }
+        visitAll(links, depth - 1);
+    }
+
+    private void visitAll(List<String> links, int depth) {
+        if (links != null) {
+            for (String link : links) {
+                visit(link, depth);
+            }
+        }
+    }
+
+    private void submitDownload(Page page) {
+        work.register();
+        try {
+            crawler.submitDownload(page.url, page.depth, () -> {
+                try {
+                    Document document = budget.download(crawler, page.url);
+                    if (document == null) {
+                        synchronized (page) {
+                            page.state = State.SKIPPED;
+                        }
+                        return;
+                    }
+                    synchronized (page) {
+                        page.document = document;
+                        page.state = State.DOWNLOADED;
+                        if (page.depth > 1 && !budget.isStopped()) {
+                            page.state = State.EXTRACTING;
+                            submitExtraction(page);
+                        }
+                    }
+                    listener.downloaded(page.url, document);
+                } catch (IOException e) {
+                    synchronized (page) {
+                        page.state = State.FAILED;
+                        page.error = e;
+                    }
+                    listener.failed(page.url, e);
+                } finally {
+                    work.arrive();
+                }
+            });
+        } catch (MalformedURLException e) {
+            page.state = State.FAILED;
+            page.error = e;
+            listener.failed(page.url, e);
+            work.arrive();
+        }
+    }
+
+    private void submitExtraction(Page page) {
+        work.register();
+        crawler.submitExtraction(() -> {
+            try {
+                List<String> links;
+                try {
+                    links = crawler.newLinks(page.document.extractLinks(), link -> true);
+                } catch (IOException ignored) {
+                    links = List.of();
+                }
+                int depth;
+                synchronized (page) {
+                    page.document = null;
+                    page.state = State.EXTRACTED;
+                    depth = page.depth;
+                    page.links = depth < maxDepth ? links : null;
+                }
+                visitAll(links, depth - 1);
+            } finally {
+                work.arrive();
+            }
+        });
+    }
+
+    /**
+     * Passes pages to other shards
+     */
+    @FunctionalInterface
+    interface Forwarder {
+        /**
+         * @return {@code true} if {@code url} belongs to other shard and was passed to it
+         */
+        boolean forward(String url, int depth);
+    }
+
+    private enum State {
+        NEW, DOWNLOADING, DOWNLOADED, EXTRACTING, EXTRACTED, FAILED, SKIPPED
+    }
+
+    private static final class Page {
+        private final String url;
+        private State state = State.NEW;
+        private int depth;
+        private Document document;
+        private List<String> links;
+        private IOException error;
+
+        private Page(String url) {
+            this.url = url;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link Downloader}, that remembers previous fetches of pages and does not download unchanged pages again.
+ * <p>
+ * Page fetched less than {@code maxAge} ago is considered unchanged. Older page is revalidated by
+ * {@link Revalidator}, if one is set and page has validators, or downloaded again otherwise.
+ * Validators of page are taken from its document, if it is {@link Validated}, so no extra requests are sent.
+ * <p>
+ * Links of downloaded page are extracted by {@link #download}, so failure of extraction is failure of download.
+ * Documents of unchanged pages return links saved at previous fetch, so pages are not downloaded to extract them.
+ * <p>
+ * Fetches are loaded from store file on creation and saved to it by {@link #close()}.
+ */
+public class RecrawlDownloader implements Downloader, Closeable {
+    private final Downloader downloader;
+    private final Path store;
+    private final long maxAge;
+    private final Revalidator revalidator;
+    private final Map<String, Fetch> fetches = new ConcurrentHashMap<>();
+
+    /**
+     * Creates downloader, that revalidates pages older than {@code maxAge} by {@code revalidator}
+     *
+     * @param downloader  downloader of changed pages
+     * @param store       file with previous fetches, created if absent
+     * @param maxAge      age of fetch, after which page should be revalidated
+     * @param revalidator checker of pages older than {@code maxAge}, or {@code null} to download them again
+     * @throws IOException if store can not be read
+     */
+    public RecrawlDownloader(Downloader downloader, Path store, Duration maxAge, Revalidator revalidator)
+            throws IOException {
+        this.downloader = downloader;
+        this.store = store;
+        this.maxAge = maxAge.toMillis();
+        this.revalidator = revalidator;
+        if (Files.exists(store)) {
+            load();
+        }
+    }
+
+    /**
+     * Creates downloader, that downloads again pages older than {@code maxAge}
+     *
+     * @see #RecrawlDownloader(Downloader, Path, Duration, Revalidator)
+     */
+    public RecrawlDownloader(Downloader downloader, Path store, Duration maxAge) throws IOException {
+        this(downloader, store, maxAge, null);
+    }
+
+    @Override
+    public Document download(String url) throws IOException {
+        long now = System.currentTimeMillis();
+        Fetch previous = fetches.get(url);
+        if (previous != null && previous.links != null && isUnchanged(url, previous, now)) {
+            return () -> previous.links;
+        }
+        return fetch(url, previous);
+    }
+
+    /**
+     * Tells whether page did not change since {@code previous} fetch.
+     * Page, that can not be revalidated, is considered changed.
+     */
+    private boolean isUnchanged(String url, Fetch previous, long now) {
+        if (now - previous.time < maxAge) {
+            return true;
+        }
+        if (revalidator == null || previous.validators.isEmpty()) {
+            return false;
+        }
+        try {
+            if (revalidator.unchanged(url, previous.validators)) {
+                fetches.replace(url, previous, previous.withTime(now));
+                return true;
+            }
+        } catch (IOException ignored) {
+            // Downloaded again
+        }
+        return false;
+    }
+
+    private Document fetch(String url, Fetch previous) throws IOException {
+        Document document = downloader.download(url);
+        List<String> links = document.extractLinks();
+        Map<String, String> validators = document instanceof Validated validated
+                ? Map.copyOf(validated.validators())
+                : Map.of();
+        Fetch fetch = new Fetch(System.currentTimeMillis(), previous != null ? previous.hash : null, validators, null)
+                .withLinks(links);
+        fetches.put(url, fetch);
+        return () -> fetch.links;
+    }
+
+    /**
+     * Tells whether links of {@code url} differ from links of its previous fetch
+     *
+     * @param url url of page
+     * @return {@code true} if page was not fetched before, or links of its last two fetches differ
+     */
+    public boolean isChanged(String url) {
+        Fetch fetch = fetches.get(url);
+        return fetch == null || !fetch.unchanged;
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(store)))) {
+            for (int count = in.readInt(); count > 0; count--) {
+                String url = in.readUTF();
+                long time = in.readLong();
+                String hash = in.readBoolean() ? in.readUTF() : null;
+                Map<String, String> validators = new HashMap<>();
+                for (int i = in.readInt(); i > 0; i--) {
+                    validators.put(in.readUTF(), in.readUTF());
+                }
+                List<String> links = null;
+                int linkCount = in.readInt();
+                if (linkCount >= 0) {
+                    links = new ArrayList<>(linkCount);
+                    for (int i = 0; i < linkCount; i++) {
+                        links.add(in.readUTF());
+                    }
+                }
+                fetches.put(url, new Fetch(time, hash, validators, links));
+            }
+        }
+    }
+
+    /**
+     * Saves fetches to store file
+     *
+     * @throws IOException if store can not be written
+     */
+    public void save() throws IOException {
+        Path parent = store.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, "fetches", ".tmp");
+        try {
+            Map<String, Fetch> snapshot = Map.copyOf(fetches);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(snapshot.size());
+                for (var entry : snapshot.entrySet()) {
+                    Fetch fetch = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(fetch.time);
+                    out.writeBoolean(fetch.hash != null);
+                    if (fetch.hash != null) {
+                        out.writeUTF(fetch.hash);
+                    }
+                    out.writeInt(fetch.validators.size());
+                    for (var validator : fetch.validators.entrySet()) {
+                        out.writeUTF(validator.getKey());
+                        out.writeUTF(validator.getValue());
+                    }
+                    out.writeInt(fetch.links != null ? fetch.links.size() : -1);
+                    if (fetch.links != null) {
+                        for (String link : fetch.links) {
+                            out.writeUTF(link);
+                        }
+                    }
+                }
+            }
+            Files.move(temp, store, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        save();
+    }
+
+    /**
+     * Result of one fetch of page.
+     * {@code hash} is hash of links of page.
+     */
+    private static final class Fetch {
+        private final long time;
+        private final String hash;
+        private final Map<String, String> validators;
+        private final List<String> links;
+        private final boolean unchanged;
+
+        private Fetch(long time, String hash, Map<String, String> validators, List<String> links) {
+            this(time, hash, validators, links, false);
+        }
+
+        private Fetch(long time, String hash, Map<String, String> validators, List<String> links, boolean unchanged) {
+            this.time = time;
+            this.hash = hash;
+            this.validators = validators;
+            this.links = links;
+            this.unchanged = unchanged;
+        }
+
+        private Fetch withTime(long time) {
+            return new Fetch(time, hash, validators, links, true);
+        }
+
+        private Fetch withLinks(List<String> links) {
+            String linksHash = hash(links);
+            return new Fetch(time, linksHash, validators, List.copyOf(links), linksHash.equals(hash));
+        }
+
+        private static String hash(List<String> links) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                for (String link : links) {
+                    digest.update(link.getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) '\n');
+                }
+                return HexFormat.of().formatHex(digest.digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new AssertionError("SHA-256 is supported by every Java platform", e);
+            }
+        }
+    }
+
+    /**
+     * Document, that knows validators of response it was read from, e.g. its {@code ETag} and {@code Last-Modified}
+     */
+    public interface Validated extends Document {
+        /**
+         * @return validators of page, or empty map if page has none
+         */
+        Map<String, String> validators();
+
+        /**
+         * Returns validators of HTTP response, that are understood by {@link Revalidator#http}
+         *
+         * @param connection connection, that received response
+         * @return values of {@code ETag} and {@code Last-Modified} headers
+         */
+        static Map<String, String> headers(URLConnection connection) {
+            Map<String, String> validators = new HashMap<>();
+            for (String header : HttpRevalidator.CONDITIONS.keySet()) {
+                String value = connection.getHeaderField(header);
+                if (value != null) {
+                    validators.put(header, value);
+                }
+            }
+            return validators;
+        }
+    }
+
+    /**
+     * Checks whether page changed since its previous fetch, without downloading it
+     */
+    public interface Revalidator {
+        /**
+         * @param url        url of page
+         * @param validators validators of page at its previous fetch
+         * @return {@code true} if page did not change since then
+         * @throws IOException if page can not be checked
+         */
+        boolean unchanged(String url, Map<String, String> validators) throws IOException;
+
+        /**
+         * Creates revalidator, that sends conditional HTTP {@code HEAD} requests with {@code ETag}
+         * and {@code Last-Modified} validators.
+         * Page is unchanged, if conditional request is answered with {@code 304 Not Modified}.
+         *
+         * @param timeout connect and read timeout of requests
+         * @return HTTP revalidator
+         */
+        static Revalidator http(Duration timeout) {
+            return new HttpRevalidator((int) timeout.toMillis());
+        }
+    }
+
+    private static final class HttpRevalidator implements Revalidator {
+        private static final Map<String, String> CONDITIONS = Map.of(
+                "ETag", "If-None-Match",
+                "Last-Modified", "If-Modified-Since"
+        );
+
+        private final int timeout;
+
+        private HttpRevalidator(int timeout) {
+            this.timeout = timeout;
+        }
+
+        @Override
+        public boolean unchanged(String url, Map<String, String> validators) throws IOException {
+            HttpURLConnection connection = head(url);
+            if (connection == null) {
+                return false;
+            }
+            try {
+                validators.forEach((header, value) -> {
+                    String condition = CONDITIONS.get(header);
+                    if (condition != null) {
+                        connection.setRequestProperty(condition, value);
+                    }
+                });
+                return connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+            } finally {
+                connection.disconnect();
+            }
+        }
+
+        private HttpURLConnection head(String url) throws IOException {
+            URLConnection connection = new URL(url).openConnection();
+            if (!(connection instanceof HttpURLConnection http)) {
+                return null;
+            }
+            http.setRequestMethod("HEAD");
+            http.setConnectTimeout(timeout);
+            http.setReadTimeout(timeout);
+            return http;
+        }
+    }
+}
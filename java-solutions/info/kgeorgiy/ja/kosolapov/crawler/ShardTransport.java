@@ -0,0 +1,37 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Channel between shards of {@link ShardedCrawler}. Carries pages found by one shard, that belong to another.
+ */
+public interface ShardTransport extends Closeable {
+    /**
+     * Makes messages to {@code shard} be delivered to {@code receiver}
+     *
+     * @param shard    index of shard
+     * @param receiver receiver of messages of shard
+     * @throws IOException if shard can not be reached by this transport
+     */
+    void register(int shard, Receiver receiver) throws IOException;
+
+    /**
+     * Sends page to {@code shard}. Message is delivered after this call, or during it.
+     *
+     * @param shard index of receiving shard
+     * @param crawl id of crawl
+     * @param url   url of page
+     * @param depth remaining depth of crawl at page
+     * @throws IOException if message can not be sent
+     */
+    void send(int shard, long crawl, String url, int depth) throws IOException;
+
+    /**
+     * Receiver of messages of one shard
+     */
+    @FunctionalInterface
+    interface Receiver {
+        void receive(long crawl, String url, int depth);
+    }
+}
@@ -0,0 +1,164 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Crawler;
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import info.kgeorgiy.java.advanced.crawler.URLUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Crawler, that splits hosts between several {@link WebCrawler} shards by hash of host.
+ * Each shard downloads pages of its hosts with its own limits and keeps its own pages,
+ * links to pages of other shards are sent through {@link ShardTransport}.
+ * Pages and errors are the same as of single {@link WebCrawler} in pipelined mode.
+ * <p>
+ * Shards of one crawl count their tasks by one {@link WorkCounter}, and page sent to other shard is counted
+ * as task until it is received, so crawl ends, when all shards finished their tasks and no pages are in transit.
+ * Received pages are visited on extraction threads of shards, so receiving thread of transport is never blocked
+ * by sending pages further.
+ */
+public class ShardedCrawler implements Crawler {
+    private final List<WebCrawler> shards;
+    private final ShardTransport transport;
+    private final AtomicLong crawls = new AtomicLong();
+    private final Map<Long, Crawl> active = new ConcurrentHashMap<>();
+
+    /**
+     * Creates crawler of {@code shards}, that owns them and {@code transport}.
+     * All shards should normalize urls in the same way.
+     *
+     * @param shards    crawlers of shards
+     * @param transport transport between shards
+     * @throws IOException if shards can not be registered in {@code transport}
+     */
+    public ShardedCrawler(List<WebCrawler> shards, ShardTransport transport) throws IOException {
+        this.shards = List.copyOf(shards);
+        this.transport = transport;
+        for (int i = 0; i < this.shards.size(); i++) {
+            int shard = i;
+            transport.register(shard, (crawl, url, depth) -> {
+                Crawl target = active.get(crawl);
+                if (target != null) {
+                    target.receive(shard, url, depth);
+                }
+            });
+        }
+    }
+
+    private int shardOf(String url) {
+        try {
+            return Math.floorMod(URLUtils.getHost(url).hashCode(), shards.size());
+        } catch (MalformedURLException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public Result download(String url, int depth) {
+        Crawl crawl = new Crawl(crawls.incrementAndGet(), depth);
+        active.put(crawl.id, crawl);
+        try {
+            String start = shards.get(0).normalize(url);
+            crawl.parts[shardOf(start)].accept(start, depth);
+            crawl.await();
+        } catch (InterruptedException e) {
+            System.err.println("Unexpected interruption of sharded crawl");
+            Thread.currentThread().interrupt();
+        } finally {
+            active.remove(crawl.id);
+        }
+        return new Result(List.copyOf(crawl.downloaded), Map.copyOf(crawl.errors));
+    }
+
+    /**
+     * Closes transport and all shards
+     */
+    @Override
+    public void close() {
+        try {
+            transport.close();
+        } catch (IOException e) {
+            System.err.println("Can not close shard transport: " + e.getMessage());
+        }
+        shards.forEach(WebCrawler::close);
+    }
+
+    private final class Crawl implements CrawlListener {
+        private final long id;
+        private final PipelinedCrawl[] parts;
+        private final List<Map<String, Integer>> forwarded = new ArrayList<>();
+        private final WorkCounter work = new WorkCounter();
+        private final BudgetTracker budget = new BudgetTracker(CrawlBudget.unlimited());
+        private final Set<String> downloaded = ConcurrentHashMap.newKeySet();
+        private final Map<String, IOException> errors = new ConcurrentHashMap<>();
+        private final Queue<IOException> failures = new ConcurrentLinkedQueue<>();
+
+        private Crawl(long id, int depth) {
+            this.id = id;
+            parts = new PipelinedCrawl[shards.size()];
+            for (int i = 0; i < parts.length; i++) {
+                int shard = i;
+                forwarded.add(new ConcurrentHashMap<>());
+                parts[i] = new PipelinedCrawl(shards.get(i), this, budget, work,
+                        (url, remaining) -> forward(shard, url, remaining));
+                parts[i].start(depth);
+            }
+        }
+
+        private boolean forward(int shard, String url, int depth) {
+            int owner = shardOf(url);
+            if (owner == shard) {
+                return false;
+            }
+            Map<String, Integer> best = forwarded.get(shard);
+            for (Integer previous = best.putIfAbsent(url, depth); previous != null; ) {
+                if (previous >= depth) {
+                    return true;
+                }
+                if (best.replace(url, previous, depth)) {
+                    break;
+                }
+                previous = best.putIfAbsent(url, depth);
+            }
+            // Sending task is not finished yet, so page may be counted
+            work.register();
+            try {
+                transport.send(owner, id, url, depth);
+            } catch (IOException e) {
+                failures.add(e);
+                work.arrive();
+            }
+            return true;
+        }
+
+        private void receive(int shard, String url, int depth) {
+            parts[shard].accept(url, depth);
+            work.arrive();
+        }
+
+        private void await() throws InterruptedException {
+            budget.await(work);
+            if (!failures.isEmpty()) {
+                IOException failure = failures.poll();
+                throw new UncheckedIOException("Can not send page to other shard: " + failure.getMessage(), failure);
+            }
+        }
+
+        @Override
+        public void downloaded(String url, Document document) {
+            downloaded.add(url);
+        }
+
+        @Override
+        public void failed(String url, IOException exception) {
+            errors.put(url, exception);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+
+/**
+ * Document, that knows its size. Used to limit bytes of crawl by {@link CrawlBudget#maxBytes()}.
+ */
+public interface SizedDocument extends Document {
+    /**
+     * @return size of document in bytes
+     */
+    long size();
+}
@@ -0,0 +1,109 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transport between shards over TCP connections on loopback interface.
+ * Each registered shard listens on its own port, and each receiving shard gets one connection,
+ * shared by all senders.
+ */
+public class TcpShardTransport implements ShardTransport {
+    private final Map<Integer, ServerSocket> servers = new ConcurrentHashMap<>();
+    private final Map<Integer, DataOutputStream> connections = new ConcurrentHashMap<>();
+    private final Set<Closeable> sockets = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void register(int shard, Receiver receiver) throws IOException {
+        ServerSocket server = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+        sockets.add(server);
+        servers.put(shard, server);
+        start("shard-" + shard + "-acceptor", () -> {
+            try {
+                while (true) {
+                    Socket socket = server.accept();
+                    sockets.add(socket);
+                    start("shard-" + shard + "-receiver", () -> receive(socket, receiver));
+                }
+            } catch (IOException ignored) {
+                // Server socket is closed
+            }
+        });
+    }
+
+    private static void receive(Socket socket, Receiver receiver) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (true) {
+                long crawl = in.readLong();
+                String url = in.readUTF();
+                int depth = in.readInt();
+                receiver.receive(crawl, url, depth);
+            }
+        } catch (IOException ignored) {
+            // Connection is closed
+        }
+    }
+
+    private static void start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void send(int shard, long crawl, String url, int depth) throws IOException {
+        DataOutputStream out = connection(shard);
+        synchronized (out) {
+            out.writeLong(crawl);
+            out.writeUTF(url);
+            out.writeInt(depth);
+            out.flush();
+        }
+    }
+
+    private DataOutputStream connection(int shard) throws IOException {
+        DataOutputStream out = connections.get(shard);
+        if (out != null) {
+            return out;
+        }
+        synchronized (connections) {
+            out = connections.get(shard);
+            if (out == null) {
+                ServerSocket server = servers.get(shard);
+                if (server == null) {
+                    throw new IOException("Unknown shard " + shard);
+                }
+                Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                connections.put(shard, out);
+            }
+            return out;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (Closeable socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import java.util.Locale;
+
+/**
+ * Brings URLs of the same page to the same form: removes fragment and lower-cases scheme and host.
+ */
+final class UrlNormalizer {
+    private UrlNormalizer() {
+    }
+
+    static String normalize(String url) {
+        int fragment = url.indexOf('#');
+        String withoutFragment = fragment < 0 ? url : url.substring(0, fragment);
+        int schemeEnd = withoutFragment.indexOf("://");
+        if (schemeEnd < 0) {
+            return withoutFragment;
+        }
+        int authorityEnd = schemeEnd + 3;
+        while (authorityEnd < withoutFragment.length()
+                && "/?".indexOf(withoutFragment.charAt(authorityEnd)) < 0) {
+            authorityEnd++;
+        }
+        int hostStart = Math.max(withoutFragment.lastIndexOf('@', authorityEnd - 1) + 1, schemeEnd + 3);
+        return withoutFragment.substring(0, schemeEnd + 3).toLowerCase(Locale.ROOT)
+                + withoutFragment.substring(schemeEnd + 3, hostStart)
+                + withoutFragment.substring(hostStart, authorityEnd).toLowerCase(Locale.ROOT)
+                + withoutFragment.substring(authorityEnd);
+    }
+}
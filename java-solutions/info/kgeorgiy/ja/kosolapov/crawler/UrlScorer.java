@@ -0,0 +1,61 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.URLUtils;
+
+import java.net.MalformedURLException;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Value of page for crawl. Pages with greater score are downloaded first, as far as per-host limits allow.
+ * Pages with equal score are downloaded in order of scheduling, hosts with equal score are served in turn.
+ */
+@FunctionalInterface
+public interface UrlScorer {
+    /**
+     * Returns score of page
+     *
+     * @param url   url of page
+     * @param depth remaining depth of crawl at page, {@code depth} of {@code download} for start page
+     * @return score of page
+     */
+    double score(String url, int depth);
+
+    /**
+     * @param other scorer to add
+     * @return scorer, that returns sum of scores of this scorer and {@code other}
+     */
+    default UrlScorer plus(UrlScorer other) {
+        return (url, depth) -> score(url, depth) + other.score(url, depth);
+    }
+
+    /**
+     * @return scorer, that prefers pages closer to start page
+     */
+    static UrlScorer byDepth() {
+        return (url, depth) -> depth;
+    }
+
+    /**
+     * @param weights scores of hosts, other hosts get zero
+     * @return scorer by host of page
+     */
+    static UrlScorer byHost(Map<String, Double> weights) {
+        return (url, depth) -> {
+            try {
+                return weights.getOrDefault(URLUtils.getHost(url), 0.0);
+            } catch (MalformedURLException e) {
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * @param pattern pattern of valuable urls
+     * @param score   score of urls, that contain match of {@code pattern}
+     * @return scorer by url pattern, other urls get zero
+     */
+    static UrlScorer matching(Pattern pattern, double score) {
+        return (url, depth) -> pattern.matcher(url).find() ? score : 0;
+    }
+}
@@ -1,22 +1,42 @@
 package info.kgeorgiy.ja.kosolapov.crawler;
 
+import info.kgeorgiy.ja.kosolapov.concurrent.MBeans;
 import info.kgeorgiy.java.advanced.crawler.*;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 public class WebCrawler implements Crawler {
+    /**
+     * Maximal count of URLs of one crawl level, that are scheduled, but not downloaded,
+     * or whose links are not extracted yet
+     */
+    private static final int MAX_PENDING = 1 << 16;
 
     private final Downloader downloader;
-    private final ConcurrentHashMap<String, HostTasks> hostTasks;
+    private final HostScheduler scheduler;
     private final ExecutorService downloadExecutor;
-    private final int perHost;
     private final ExecutorService extractExecutor;
+    private final Path spillDirectory;
+    private final int hotFrontierSize;
+    private final boolean pipelined;
+    private final boolean normalizeUrls;
+    private final int downloadLimit;
+    private final int extractors;
+    private final UrlScorer scorer;
+    private final Metrics metrics = new Metrics();
+    private final Set<ObjectName> mbeans = ConcurrentHashMap.newKeySet();
 
     private static int extractArgOrGetOne(String[] args, int pos) throws NumberFormatException {
         try {
@@ -59,127 +79,677 @@ public class WebCrawler implements Crawler {
     }
 
     public WebCrawler(Downloader downloader, int downloaders, int extractors, int perHost) {
-        this.downloader = downloader;
-        downloadExecutor = Executors.newFixedThreadPool(downloaders);
-        extractExecutor = Executors.newFixedThreadPool(extractors);
-        this.perHost = perHost;
-        hostTasks = new ConcurrentHashMap<>();
+        this(builder(downloader).downloaders(downloaders).extractors(extractors).perHost(perHost));
     }
 
-    private void extractLinks(Document document, Deque<String> next,
-                              Phaser phaser, int depth) {
+    private WebCrawler(Builder builder) {
+        this.downloader = builder.downloader;
+        downloadExecutor = builder.virtualThreads
+                ? virtualThreadExecutor()
+                : Executors.newFixedThreadPool(builder.downloaders);
+        extractExecutor = Executors.newFixedThreadPool(builder.extractors);
+        this.spillDirectory = builder.spillDirectory;
+        this.hotFrontierSize = builder.hotFrontierSize;
+        this.pipelined = builder.pipelined;
+        this.normalizeUrls = builder.normalizeUrls;
+        this.downloadLimit = builder.maxInFlight > 0 ? builder.maxInFlight : builder.downloaders;
+        this.extractors = builder.extractors;
+        this.scorer = builder.scorer;
+        scheduler = new HostScheduler(
+                downloadExecutor,
+                downloadLimit,
+                builder.perHost,
+                builder.hostRate,
+                builder.hostDelay.toNanos(),
+                builder.adaptivePerHost
+        );
+    }
 
-        if (depth != 1) {
-            phaser.register();
-            extractExecutor.submit(linkExtraction(document, next, phaser));
+    /**
+     * Creates executor, that runs each task in new virtual thread, if they are supported by runtime,
+     * or else in cached platform thread.
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
         }
     }
 
-    private Runnable linkExtraction(Document document, Deque<String> next, Phaser phaser) {
+    /**
+     * Creates builder of {@code WebCrawler}, that uses {@code downloader}
+     *
+     * @param downloader downloader of pages
+     * @return new builder with one downloader, one extractor and one download per host
+     */
+    public static Builder builder(Downloader downloader) {
+        return new Builder(downloader);
+    }
+
+    /**
+     * Schedules extraction of links of {@code document}, if they are needed
+     *
+     * @return {@code true} if extraction is scheduled and releases pending permit of {@code document}
+     */
+    private boolean extractLinks(Document document, Frontier next, Predicate<String> marked, WorkCounter work,
+                                 Semaphore pending, int depth, Queue<IOException> failures) {
+
+        if (depth == 1) {
+            return false;
+        }
+        work.register();
+        submitExtraction(linkExtraction(document, next, marked, work, pending, failures));
+        return true;
+    }
+
+    private Runnable linkExtraction(Document document, Frontier next, Predicate<String> marked, WorkCounter work,
+                                    Semaphore pending, Queue<IOException> failures) {
 
         return () -> {
+            List<String> links;
             try {
-                next.addAll(document.extractLinks());
+                links = newLinks(document.extractLinks(), marked);
             } catch (IOException ignored) {
+                links = List.of();
+            }
+            try {
+                next.addAll(links);
+            } catch (IOException e) {
+                failures.add(e);
             } finally {
-                phaser.arriveAndDeregister();
+                work.arrive();
+                pending.release();
             }
         };
     }
 
 
-    private Runnable runnableFromUrl(String url, HostTasks hostTasks, Set<String> downloaded, Phaser phaser,
-                                     Map<String, IOException> errors, Consumer<Document> linkExtractor) {
+    /**
+     * Normalizes {@code links} of one document and keeps those, that are new for this document and {@code visited}
+     *
+     * @param visited adds link to crawl visited set, returns {@code false} if it was already there
+     */
+    List<String> newLinks(List<String> links, Predicate<String> visited) {
+        Set<String> local = new HashSet<>();
+        List<String> result = new ArrayList<>();
+        for (String link : links) {
+            String normalized = normalize(link);
+            if (local.add(normalized) && visited.test(normalized)) {
+                result.add(normalized);
+            }
+        }
+        return result;
+    }
+
+    String normalize(String url) {
+        return normalizeUrls ? UrlNormalizer.normalize(url) : url;
+    }
+
+    private Runnable runnableFromUrl(String url, WorkCounter work, Semaphore pending, CrawlListener listener,
+                                     BudgetTracker budget, Predicate<Document> linkExtractor) {
         return () -> {
+            boolean extracting = false;
             try {
-                var document = downloader.download(url);
-                downloaded.add(url);
-                linkExtractor.accept(document);
+                var document = budget.download(this, url);
+                if (document != null) {
+                    extracting = linkExtractor.test(document);
+                    listener.downloaded(url, document);
+                }
             } catch (IOException exception) {
-                errors.put(url, exception);
+                listener.failed(url, exception);
             } finally {
-                phaser.arriveAndDeregister();
-                hostTasks.finish();
+                work.arrive();
+                if (!extracting) {
+                    pending.release();
+                }
             }
         };
     }
 
-    private Deque<String> downloadUrlsAndExtractLInks(List<String> urls, Map<String, IOException> errors,
-                                                      Set<String> downloaded,
-                                                      int depth) throws InterruptedException {
-        // :NOTE: Queue
-        Deque<String> next = new ConcurrentLinkedDeque<>();
+    private Frontier downloadUrlsAndExtractLInks(Frontier urls, Predicate<String> marked, CrawlListener listener,
+                                                 BudgetTracker budget, int depth)
+            throws InterruptedException, IOException {
+        Frontier next = new Frontier(spillDirectory, hotFrontierSize);
+        Queue<IOException> failures = new ConcurrentLinkedQueue<>();
+        Semaphore pending = new Semaphore(MAX_PENDING);
 
-        var phaser = new Phaser(1);
-        Consumer<Document> linkExtractor = (document) -> extractLinks(document, next, phaser, depth);
-        for (var url : urls) {
+        var work = new WorkCounter();
+        Predicate<Document> linkExtractor = (document) -> !budget.isStopped()
+                && extractLinks(document, next, marked, work, pending, depth, failures);
+        try {
+            urls.drain(url -> {
+                if (budget.isStopped()) {
+                    return;
+                }
+                pending.acquire();
+                work.register();
+                try {
+                    submitDownload(url, depth, runnableFromUrl(url, work, pending, listener, budget, linkExtractor));
+                } catch (MalformedURLException e) {
+                    listener.failed(url, e);
+                    work.arrive();
+                    pending.release();
+                }
+            });
+        } catch (InterruptedException e) {
+            budget.stop(CrawlOutcome.Reason.INTERRUPTED);
+            throw e;
+        } finally {
+            budget.await(work);
+        }
+        if (!failures.isEmpty()) {
+            next.close();
+            throw failures.poll();
+        }
+        return next;
+    }
+
+    /**
+     * Schedules {@code task}, that downloads {@code url} with remaining {@code depth},
+     * respecting limits of host of {@code url} and score of {@code url}
+     *
+     * @throws MalformedURLException if host of {@code url} can not be determined
+     */
+    void submitDownload(String url, int depth, Runnable task) throws MalformedURLException {
+        scheduler.submit(URLUtils.getHost(url), task, scorer.score(url, depth));
+    }
+
+    void submitExtraction(Runnable task) {
+        metrics.extractionQueued();
+        extractExecutor.execute(() -> {
+            long start = metrics.extractionStarted();
             try {
-                var hostTasks = getHost(url);
-                phaser.register();
-                hostTasks.addTask(runnableFromUrl(url, hostTasks, downloaded, phaser, errors, linkExtractor));
-            } catch (MalformedURLException e) {
-                errors.put(url, e);
+                task.run();
+            } finally {
+                metrics.extractionFinished(start);
             }
+        });
+    }
+
+    /**
+     * Downloads page by downloader of this crawler and records its download time
+     */
+    Document downloadPage(String url) throws IOException {
+        long start = System.nanoTime();
+        try {
+            Document document = downloader.download(url);
+            downloaded(url, System.nanoTime() - start, true);
+            return document;
+        } catch (IOException e) {
+            downloaded(url, System.nanoTime() - start, false);
+            throw e;
         }
-        phaser.awaitAdvanceInterruptibly(phaser.arrive());
-        return next;
     }
 
+    private void downloaded(String url, long time, boolean success) {
+        String host;
+        try {
+            host = URLUtils.getHost(url);
+        } catch (MalformedURLException ignored) {
+            // Downloads are scheduled by host, so it is known
+            return;
+        }
+        metrics.downloaded(host, time, success);
+        scheduler.feedback(host, time, success);
+    }
+
+    /**
+     * Returns metrics of this crawler. Metrics are updated while crawler works.
+     *
+     * @return metrics of this crawler
+     */
+    public CrawlerMetricsMXBean metrics() {
+        return metrics;
+    }
+
+    /**
+     * Registers {@link #metrics()} in platform MBean server. MBean is unregistered by {@link #close()}.
+     *
+     * @param name name of this crawler in {@link ObjectName}
+     * @return name of registered MBean
+     * @throws JMException if registration failed
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = MBeans.register(getClass().getPackageName(), "WebCrawler", name, metrics);
+        mbeans.add(objectName);
+        return objectName;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * In pipelined mode extracted links are scheduled immediately, without waiting for other pages of the same level.
+     */
     @Override
     public Result download(String url, int depth) {
-        List<String> current = List.of(url);
+        CrawlOutcome outcome = download(url, depth, CrawlBudget.unlimited());
+        if (outcome.reason() == CrawlOutcome.Reason.INTERRUPTED) {
+            System.err.println("Unexpected interruption of crawl");
+        }
+        return outcome.result();
+    }
 
-        Set<String> marked = new HashSet<>();
+    /**
+     * Crawls pages like {@link #download(String, int)}, until {@code budget} is exhausted.
+     * If calling thread is interrupted, crawl is stopped and interruption status is kept.
+     *
+     * @param url    url to start from
+     * @param depth  depth of crawl
+     * @param budget limits of crawl
+     * @return pages and errors, that were reported before end of crawl, and reason of end
+     */
+    public CrawlOutcome download(String url, int depth, CrawlBudget budget) {
         Set<String> downloaded = ConcurrentHashMap.newKeySet();
         Map<String, IOException> errors = new ConcurrentHashMap<>();
+        CrawlOutcome.Reason reason;
+        try {
+            reason = download(url, depth, new CrawlListener() {
+                @Override
+                public void downloaded(String url, Document document) {
+                    downloaded.add(url);
+                }
+
+                @Override
+                public void failed(String url, IOException exception) {
+                    errors.put(url, exception);
+                }
+            }, budget);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reason = CrawlOutcome.Reason.INTERRUPTED;
+        }
+        return new CrawlOutcome(new Result(List.copyOf(downloaded), Map.copyOf(errors)), reason);
+    }
 
-        marked.add(url);
+    /**
+     * Crawls pages like {@link #download(String, int)}, but reports every page to {@code listener}
+     * as soon as it is downloaded or failed, without collecting them.
+     * Returns when all pages are reported.
+     *
+     * @param url      url to start from
+     * @param depth    depth of crawl
+     * @param listener receiver of pages and errors
+     * @throws InterruptedException if interrupted while waiting for pages
+     */
+    public void download(String url, int depth, CrawlListener listener) throws InterruptedException {
+        download(url, depth, listener, CrawlBudget.unlimited());
+    }
 
-        for (int i = depth; i > 0; i--) {
-            try {
-                current = downloadUrlsAndExtractLInks(current, errors, downloaded, depth)
-                        .stream()
-                        .filter(x -> !marked.contains(x))
-                        .peek(marked::add)
-                        .toList();
-            } catch (InterruptedException e) {
-                System.err.println("Unexpected interruption, on " + (depth - i + 1) + " levels of " + depth);
-                break;
+    /**
+     * Crawls pages like {@link #download(String, int, CrawlListener)}, until {@code budget} is exhausted.
+     * Pages, that are skipped or whose downloads are cancelled, are not reported.
+     *
+     * @param url      url to start from
+     * @param depth    depth of crawl
+     * @param listener receiver of pages and errors
+     * @param budget   limits of crawl
+     * @return reason of end of crawl
+     * @throws InterruptedException if interrupted while waiting for pages, crawl is stopped then
+     */
+    public CrawlOutcome.Reason download(String url, int depth, CrawlListener listener, CrawlBudget budget)
+            throws InterruptedException {
+        BudgetTracker tracker = new BudgetTracker(budget);
+        if (pipelined) {
+            new PipelinedCrawl(this, listener, tracker).run(url, depth);
+            return tracker.reason();
+        }
+        // Fingerprints are kept only together with spilled frontier, as they may rarely merge different URLs
+        Predicate<String> marked = spillDirectory != null
+                ? new FingerprintSet()::add
+                : ConcurrentHashMap.<String>newKeySet()::add;
+        Frontier current = new Frontier(spillDirectory, hotFrontierSize);
+        try {
+            String start = normalize(url);
+            marked.test(start);
+            current.addAll(List.of(start));
+            for (int i = depth; i > 0 && !tracker.isStopped(); i--) {
+                Frontier next;
+                try {
+                    next = downloadUrlsAndExtractLInks(current, marked, listener, tracker, i);
+                } finally {
+                    current.close();
+                }
+                current = next;
             }
+            current.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not store crawl frontier: " + e.getMessage(), e);
         }
-        return new Result(downloaded.stream().toList(), errors);
+        return tracker.reason();
     }
 
-    private HostTasks getHost(String url) throws MalformedURLException {
-        return hostTasks.computeIfAbsent(URLUtils.getHost(url), x -> new HostTasks());
+    /**
+     * Crawls from several pages at once. Page reachable from several start pages is downloaded
+     * and its links are extracted once, all start pages share limits of this crawler.
+     * Links of all pages are kept in memory until the end of crawl.
+     *
+     * @param depths start urls with their depths
+     * @return result of each start url, the same as result of {@link #download(String, int)} for it
+     * @throws InterruptedException if interrupted while waiting for pages
+     */
+    public Map<String, Result> downloadAll(Map<String, Integer> depths) throws InterruptedException {
+        PipelinedCrawl crawl = new PipelinedCrawl(this, new CrawlListener() {
+            @Override
+            public void downloaded(String url, Document document) {
+            }
+
+            @Override
+            public void failed(String url, IOException exception) {
+            }
+        }, new BudgetTracker(CrawlBudget.unlimited()));
+        crawl.runAll(depths);
+        Map<String, Result> results = new HashMap<>();
+        depths.forEach((url, depth) -> results.put(url, crawl.result(url, depth)));
+        return results;
     }
 
+    /**
+     * Builder of {@link WebCrawler}
+     */
+    public static final class Builder {
+        private final Downloader downloader;
+        private int downloaders = 1;
+        private int extractors = 1;
+        private int perHost = 1;
+        private Path spillDirectory;
+        private int hotFrontierSize = 1 << 16;
+        private int maxInFlight;
+        private double hostRate;
+        private Duration hostDelay = Duration.ZERO;
+        private boolean pipelined;
+        private boolean virtualThreads;
+        private boolean normalizeUrls;
+        private UrlScorer scorer = (url, depth) -> 0;
+        private boolean adaptivePerHost;
 
-    private class HostTasks {
-        private final Queue<Runnable> tasks = new ConcurrentLinkedDeque<>();
-        private final Semaphore semaphore = new Semaphore(perHost);
+        private Builder(Downloader downloader) {
+            this.downloader = downloader;
+        }
 
-        public void addTask(Runnable task) {
-            if (semaphore.tryAcquire()) {
-                downloadExecutor.submit(task);
-            } else {
-                tasks.add(task);
-            }
+        /**
+         * @param downloaders maximal count of pages downloaded at the same time
+         * @return this builder
+         */
+        public Builder downloaders(int downloaders) {
+            this.downloaders = downloaders;
+            return this;
+        }
 
+        /**
+         * @param extractors maximal count of pages, links are extracted from at the same time
+         * @return this builder
+         */
+        public Builder extractors(int extractors) {
+            this.extractors = extractors;
+            return this;
         }
 
-        public void finish() {
-            var task = tasks.poll();
-            if (task != null) {
-                downloadExecutor.submit(task);
-            } else {
-                semaphore.release();
-            }
+        /**
+         * @param perHost maximal count of pages downloaded from one host at the same time
+         * @return this builder
+         */
+        public Builder perHost(int perHost) {
+            this.perHost = perHost;
+            return this;
+        }
+
+        /**
+         * Makes crawler adapt count of downloads from each host at the same time to its responses,
+         * from one up to {@link #perHost}: it grows while host answers fast and successfully,
+         * and halves after errors and slow answers.
+         *
+         * @param adaptivePerHost {@code true} to adapt per-host concurrency
+         * @return this builder
+         */
+        public Builder adaptivePerHost(boolean adaptivePerHost) {
+            this.adaptivePerHost = adaptivePerHost;
+            return this;
+        }
+
+        /**
+         * @param maxInFlight maximal count of pages downloaded at the same time by all hosts,
+         *                    by default equal to count of downloaders
+         * @return this builder
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * @param requestsPerSecond maximal rate of downloads from one host, or {@code 0} for no limit
+         * @return this builder
+         */
+        public Builder hostRate(double requestsPerSecond) {
+            this.hostRate = requestsPerSecond;
+            return this;
+        }
+
+        /**
+         * @param delay minimal delay between starts of downloads from one host
+         * @return this builder
+         */
+        public Builder hostDelay(Duration delay) {
+            this.hostDelay = delay;
+            return this;
+        }
+
+        /**
+         * Enables spilling of crawl frontier to disk.
+         * Visited URLs of level-by-level crawl are kept as 64-bit fingerprints then,
+         * so new URL is skipped as visited with probability about {@code visited / 2^64}.
+         *
+         * @param directory directory for frontier segment files
+         * @return this builder
+         */
+        public Builder spillDirectory(Path directory) {
+            this.spillDirectory = directory;
+            return this;
+        }
+
+        /**
+         * @param size count of URLs of one level kept in memory before spilling to disk
+         * @return this builder
+         */
+        public Builder hotFrontierSize(int size) {
+            this.hotFrontierSize = size;
+            return this;
+        }
+
+        /**
+         * Enables crawling without level barriers. Pages and errors are the same as in level-by-level crawl,
+         * but links of all pages are kept in memory until the end of crawl.
+         *
+         * @param pipelined {@code true} to schedule extracted links immediately
+         * @return this builder
+         */
+        public Builder pipelined(boolean pipelined) {
+            this.pipelined = pipelined;
+            return this;
+        }
+
+        /**
+         * Runs each download in its own virtual thread instead of fixed pool of {@code downloaders} threads.
+         * Count of downloads at the same time is limited only by {@link #maxInFlight} and {@link #perHost}.
+         * If runtime does not support virtual threads, platform threads are created on demand.
+         *
+         * @param virtualThreads {@code true} to download in virtual threads
+         * @return this builder
+         */
+        public Builder virtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * Makes crawler remove fragments and lower-case scheme and host of URLs,
+         * so different forms of the same URL are downloaded once. Reported URLs are normalized too.
+         *
+         * @param normalizeUrls {@code true} to normalize URLs
+         * @return this builder
+         */
+        public Builder normalizeUrls(boolean normalizeUrls) {
+            this.normalizeUrls = normalizeUrls;
+            return this;
+        }
+
+        /**
+         * Makes crawler download pages with greater score first, as far as per-host limits allow.
+         * Level-by-level crawl orders pages of one level, pipelined crawl orders all scheduled pages.
+         * By default, pages are downloaded in order of scheduling.
+         *
+         * @param scorer scorer of pages
+         * @return this builder
+         */
+        public Builder scorer(UrlScorer scorer) {
+            this.scorer = scorer;
+            return this;
+        }
+
+        /**
+         * @return new {@link WebCrawler}
+         */
+        public WebCrawler build() {
+            return new WebCrawler(this);
+        }
+    }
+
+    private final class Metrics implements CrawlerMetricsMXBean {
+        private final long created = System.nanoTime();
+        private final LongAdder downloaded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder downloadTime = new LongAdder();
+        private final LongAdder extracted = new LongAdder();
+        private final LongAdder extractionTime = new LongAdder();
+        private final AtomicInteger queuedExtractions = new AtomicInteger();
+        private final AtomicInteger runningExtractions = new AtomicInteger();
+        private final Map<String, LatencyHistogram> hostLatencies = new ConcurrentHashMap<>();
+
+        private void downloaded(String host, long time, boolean success) {
+            (success ? downloaded : failed).increment();
+            downloadTime.add(time);
+            hostLatencies.computeIfAbsent(host, x -> new LatencyHistogram()).record(time);
+        }
+
+        private void extractionQueued() {
+            queuedExtractions.incrementAndGet();
+        }
+
+        private long extractionStarted() {
+            queuedExtractions.decrementAndGet();
+            runningExtractions.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        private void extractionFinished(long start) {
+            extractionTime.add(System.nanoTime() - start);
+            extracted.increment();
+            runningExtractions.decrementAndGet();
+        }
+
+        @Override
+        public long getDownloadedCount() {
+            return downloaded.sum();
+        }
+
+        @Override
+        public long getFailedCount() {
+            return failed.sum();
+        }
+
+        @Override
+        public long getExtractedCount() {
+            return extracted.sum();
+        }
+
+        @Override
+        public double getPagesPerSecond() {
+            return ratio(downloaded.sum() * 1e9, System.nanoTime() - created);
+        }
+
+        @Override
+        public int getInFlightDownloads() {
+            return scheduler.inFlight();
+        }
+
+        @Override
+        public int getQueuedDownloads() {
+            return scheduler.queued();
+        }
+
+        @Override
+        public double getDownloadUtilization() {
+            return ratio(scheduler.inFlight(), downloadLimit);
+        }
+
+        @Override
+        public int getReadyHostCount() {
+            return scheduler.readyHosts();
+        }
+
+        @Override
+        public int getLimitedHostCount() {
+            return scheduler.limitedHosts();
+        }
+
+        @Override
+        public int getInFlightExtractions() {
+            return runningExtractions.get();
+        }
+
+        @Override
+        public int getQueuedExtractions() {
+            return queuedExtractions.get();
+        }
+
+        @Override
+        public double getExtractorUtilization() {
+            return ratio(runningExtractions.get(), extractors);
+        }
+
+        @Override
+        public double getAverageDownloadTimeNanos() {
+            return ratio(downloadTime.sum(), downloaded.sum() + failed.sum());
+        }
+
+        @Override
+        public double getAverageQueueWaitTimeNanos() {
+            return scheduler.averageWaitTime();
+        }
+
+        @Override
+        public long getMaxQueueWaitTimeNanos() {
+            return scheduler.maxWaitTime();
+        }
+
+        @Override
+        public double getAverageExtractionTimeNanos() {
+            return ratio(extractionTime.sum(), extracted.sum());
+        }
+
+        @Override
+        public long[] getLatencyBucketBoundsNanos() {
+            return LatencyHistogram.bounds();
+        }
+
+        @Override
+        public Map<String, long[]> getHostLatencyHistograms() {
+            Map<String, long[]> histograms = new TreeMap<>();
+            hostLatencies.forEach((host, histogram) -> histograms.put(host, histogram.counts()));
+            return histograms;
+        }
+
+        private static double ratio(double numerator, double denominator) {
+            return denominator == 0 ? 0 : numerator / denominator;
         }
     }
 
     @Override
     public void close() {
+        mbeans.forEach(MBeans::unregister);
+        mbeans.clear();
+        scheduler.close();
         downloadExecutor.shutdown();
         extractExecutor.shutdown();
         forceShutDown(downloadExecutor);
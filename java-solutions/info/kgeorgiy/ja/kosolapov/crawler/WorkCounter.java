@@ -0,0 +1,57 @@
+package info.kgeorgiy.ja.kosolapov.crawler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count of unfinished tasks of one crawl. Unlike {@link java.util.concurrent.Phaser},
+ * count of tasks is not limited.
+ * <p>
+ * Counter is created with one task of its owner. Task may be registered only by owner, or by another
+ * unfinished task, so after count reaches zero it never grows again.
+ */
+class WorkCounter {
+    private final AtomicLong count = new AtomicLong(1);
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    void register() {
+        count.incrementAndGet();
+    }
+
+    void arrive() {
+        if (count.decrementAndGet() == 0) {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Waits until all tasks, including task of owner, are finished
+     */
+    void await() throws InterruptedException {
+        done.await();
+    }
+
+    /**
+     * Waits until all tasks, including task of owner, are finished, ignoring interruptions
+     */
+    void awaitUninterruptibly() {
+        while (true) {
+            try {
+                done.await();
+                return;
+            } catch (InterruptedException ignored) {
+                // Tasks are finishing after stop of crawl
+            }
+        }
+    }
+
+    /**
+     * Waits until all tasks are finished, but not longer than {@code timeout} nanoseconds
+     *
+     * @return {@code true} if all tasks are finished
+     */
+    boolean await(long timeout) throws InterruptedException {
+        return done.await(timeout, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,183 @@
+package info.kgeorgiy.ja.kosolapov.crawler.test;
+
+import info.kgeorgiy.ja.kosolapov.crawler.CrawlListener;
+import info.kgeorgiy.ja.kosolapov.crawler.InProcessShardTransport;
+import info.kgeorgiy.ja.kosolapov.crawler.ShardTransport;
+import info.kgeorgiy.ja.kosolapov.crawler.ShardedCrawler;
+import info.kgeorgiy.ja.kosolapov.crawler.TcpShardTransport;
+import info.kgeorgiy.ja.kosolapov.crawler.WebCrawler;
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+@DisplayName("Crawler modes test")
+public class CrawlerTest {
+    private static final int GRAPHS = 5;
+    private static final int MAX_DEPTH = 5;
+    private static final int SHARDS = 3;
+    private static final Random random = new Random();
+
+    private static String randomUrl() {
+        return RandomDownloader.url(random.nextInt(RandomDownloader.PAGES));
+    }
+
+    static void checkResult(String heading, RandomDownloader.Expected expected, Result result) {
+        Assertions.assertEquals(expected.downloaded().size(), result.getDownloaded().size(),
+                heading + ": pages should be downloaded once");
+        Assertions.assertEquals(expected.downloaded(), new HashSet<>(result.getDownloaded()),
+                heading + ": downloaded pages differ from sequential crawl");
+        Assertions.assertEquals(expected.errors(), result.getErrors().keySet(),
+                heading + ": failed pages differ from sequential crawl");
+    }
+
+    private static WebCrawler.Builder crawler(Downloader downloader) {
+        return WebCrawler.builder(downloader)
+                .downloaders(1 + random.nextInt(8))
+                .extractors(1 + random.nextInt(4))
+                .perHost(1 + random.nextInt(3));
+    }
+
+    private static void testCrawler(String mode, Function<Downloader, WebCrawler> factory) {
+        for (int i = 0; i < GRAPHS; i++) {
+            long seed = random.nextLong();
+            RandomDownloader downloader = new RandomDownloader(seed);
+            try (WebCrawler crawler = factory.apply(downloader)) {
+                for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+                    String url = randomUrl();
+                    checkResult(mode + " crawl of " + url + " to depth " + depth + " with seed " + seed,
+                            downloader.expected(url, depth), crawler.download(url, depth));
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test breadth-first crawl")
+    public void testBfs() {
+        testCrawler("BFS", downloader -> crawler(downloader).build());
+    }
+
+    @Test
+    @DisplayName("Test pipelined crawl")
+    public void testPipelined() {
+        testCrawler("Pipelined", downloader -> crawler(downloader).pipelined(true).build());
+    }
+
+    @Test
+    @DisplayName("Test crawl from many start pages")
+    public void testDownloadAll() throws InterruptedException {
+        for (int i = 0; i < GRAPHS; i++) {
+            long seed = random.nextLong();
+            RandomDownloader downloader = new RandomDownloader(seed);
+            Map<String, Integer> depths = new HashMap<>();
+            for (int j = 0; j < MAX_DEPTH; j++) {
+                depths.put(randomUrl(), 1 + random.nextInt(MAX_DEPTH));
+            }
+            try (WebCrawler crawler = crawler(downloader).build()) {
+                Map<String, Result> results = crawler.downloadAll(depths);
+                Assertions.assertEquals(depths.keySet(), results.keySet(), "Result should be returned for every url");
+                depths.forEach((url, depth) -> checkResult(
+                        "Crawl of " + url + " to depth " + depth + " among " + depths + " with seed " + seed,
+                        downloader.expected(url, depth), results.get(url)));
+            }
+        }
+    }
+
+    private static void testSharded(String transportName, ShardTransportFactory transport) throws IOException {
+        for (int i = 0; i < GRAPHS; i++) {
+            long seed = random.nextLong();
+            RandomDownloader downloader = new RandomDownloader(seed);
+            List<WebCrawler> shards = new ArrayList<>();
+            for (int j = 0; j < SHARDS; j++) {
+                shards.add(crawler(downloader).build());
+            }
+            try (ShardedCrawler crawler = new ShardedCrawler(shards, transport.create())) {
+                for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+                    String url = randomUrl();
+                    checkResult("Sharded crawl over " + transportName + " of " + url + " to depth " + depth
+                            + " with seed " + seed, downloader.expected(url, depth), crawler.download(url, depth));
+                }
+            }
+        }
+    }
+
+    private interface ShardTransportFactory {
+        ShardTransport create() throws IOException;
+    }
+
+    @Test
+    @DisplayName("Test sharded crawl in one process")
+    public void testShardedInProcess() throws IOException {
+        testSharded("in-process transport", InProcessShardTransport::new);
+    }
+
+    @Test
+    @DisplayName("Test sharded crawl over TCP")
+    public void testShardedTcp() throws IOException {
+        testSharded("TCP", TcpShardTransport::new);
+    }
+
+    @Test
+    @DisplayName("Test that interrupted crawl finishes reporting pages before return")
+    public void testInterrupted() throws InterruptedException {
+        for (boolean pipelined : new boolean[]{false, true}) {
+            HostDownloader downloader = new HostDownloader(4, 400, (page, concurrent) -> 20);
+            AtomicBoolean returned = new AtomicBoolean();
+            AtomicInteger late = new AtomicInteger();
+            CrawlListener listener = new CrawlListener() {
+                @Override
+                public void downloaded(String url, Document document) {
+                    report();
+                }
+
+                @Override
+                public void failed(String url, IOException exception) {
+                    report();
+                }
+
+                private void report() {
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if (returned.get()) {
+                        late.incrementAndGet();
+                    }
+                }
+            };
+            Thread caller = Thread.currentThread();
+            Thread interrupter = new Thread(() -> {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(100);
+                    caller.interrupt();
+                } catch (InterruptedException ignored) {
+                    // Test is finished
+                }
+            });
+            try (WebCrawler crawler = WebCrawler.builder(downloader).downloaders(8).perHost(2)
+                    .pipelined(pipelined).build()) {
+                interrupter.start();
+                Assertions.assertThrows(InterruptedException.class,
+                        () -> crawler.download(HostDownloader.ROOT, 2, listener),
+                        "Crawl should be interrupted");
+                returned.set(true);
+                interrupter.join();
+                TimeUnit.MILLISECONDS.sleep(100);
+            } finally {
+                Thread.interrupted();
+            }
+            Assertions.assertEquals(0, late.get(), "Pages were reported after return of interrupted crawl");
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package info.kgeorgiy.ja.kosolapov.crawler.test;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Star of pages: root page links to all other pages, that are spread over hosts.
+ * Download of page takes time given by {@link Latency}. Records concurrency and starts of downloads.
+ */
+class HostDownloader implements Downloader {
+    static final String ROOT = "http://root.test/";
+
+    private final int hosts;
+    private final int pages;
+    private final Latency latency;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final Map<String, Host> states = new ConcurrentHashMap<>();
+
+    /**
+     * Time of download of page
+     */
+    interface Latency {
+        /**
+         * @param page       number of page
+         * @param concurrent count of running downloads of host of page, including this one
+         * @return time of download in milliseconds
+         * @throws IOException if download fails
+         */
+        long millis(int page, int concurrent) throws IOException;
+    }
+
+    private static final class Host {
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+        private final AtomicLong busy = new AtomicLong();
+        private final List<Start> starts = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    private record Start(long time, int page) {
+    }
+
+    HostDownloader(int hosts, int pages, Latency latency) {
+        this.hosts = hosts;
+        this.pages = pages;
+        this.latency = latency;
+    }
+
+    static String host(int host) {
+        return "h" + host + ".test";
+    }
+
+    private String url(int page) {
+        return "http://" + host(page % hosts) + "/p" + page;
+    }
+
+    @Override
+    public Document download(String url) throws IOException {
+        if (url.equals(ROOT)) {
+            List<String> links = new ArrayList<>();
+            for (int page = 0; page < pages; page++) {
+                links.add(url(page));
+            }
+            return () -> links;
+        }
+        Host host = states.computeIfAbsent(url.substring("http://".length(), url.indexOf('/', "http://".length())),
+                name -> new Host());
+        int page = page(url);
+        long start = System.nanoTime();
+        host.starts.add(new Start(start, page));
+        int concurrent = host.running.incrementAndGet();
+        host.maxRunning.accumulateAndGet(concurrent, Math::max);
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(latency.millis(page, concurrent));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted download of " + url, e);
+        } finally {
+            running.decrementAndGet();
+            host.running.decrementAndGet();
+            host.busy.addAndGet(System.nanoTime() - start);
+        }
+        return List::of;
+    }
+
+    /**
+     * @return maximal count of downloads running at the same time, excluding root page
+     */
+    int maxConcurrency() {
+        return maxRunning.get();
+    }
+
+    /**
+     * @return maximal count of downloads of {@code host} running at the same time
+     */
+    int maxConcurrency(String host) {
+        return states.get(host).maxRunning.get();
+    }
+
+    /**
+     * @return total time of downloads of {@code host} in nanoseconds
+     */
+    long busyTime(String host) {
+        return states.get(host).busy.get();
+    }
+
+    private List<Start> starts(String host) {
+        List<Start> starts = new ArrayList<>(states.get(host).starts);
+        starts.sort(Comparator.comparingLong(Start::time));
+        return starts;
+    }
+
+    /**
+     * @return start times of downloads of {@code host} in nanoseconds, in order of start
+     */
+    List<Long> startTimes(String host) {
+        return starts(host).stream().map(Start::time).toList();
+    }
+
+    /**
+     * @return pages of {@code host} in order of start of their downloads
+     */
+    List<Integer> startOrder(String host) {
+        return starts(host).stream().map(Start::page).toList();
+    }
+
+    /**
+     * @return number of page, or {@code -1} for root page
+     */
+    static int page(String url) {
+        return url.equals(ROOT) ? -1 : Integer.parseInt(url.substring(url.lastIndexOf('p') + 1));
+    }
+}
@@ -0,0 +1,94 @@
+package info.kgeorgiy.ja.kosolapov.crawler.test;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Random graph of pages, where every tenth page fails. Counts downloads of each page.
+ */
+class RandomDownloader implements Downloader {
+    static final int PAGES = 2000;
+    static final int HOSTS = 7;
+
+    private final long seed;
+    private final Map<String, AtomicInteger> downloads = new ConcurrentHashMap<>();
+
+    RandomDownloader(long seed) {
+        this.seed = seed;
+    }
+
+    static String url(int page) {
+        return "http://h" + page % HOSTS + ".test/p" + page;
+    }
+
+    private static int page(String url) {
+        return Integer.parseInt(url.substring(url.lastIndexOf('p') + 1));
+    }
+
+    private List<String> links(int page) {
+        Random links = new Random(seed * 31 + page);
+        return links.ints(links.nextInt(6), 0, PAGES).mapToObj(RandomDownloader::url).toList();
+    }
+
+    private boolean fails(int page) {
+        return new Random(seed * 17 + page).nextInt(10) == 0;
+    }
+
+    @Override
+    public Document download(String url) throws IOException {
+        downloads.computeIfAbsent(url, u -> new AtomicInteger()).incrementAndGet();
+        int page = page(url);
+        if (fails(page)) {
+            throw new IOException("Can not download " + url);
+        }
+        return () -> links(page);
+    }
+
+    /**
+     * @return count of downloads of each downloaded page
+     */
+    Map<String, Integer> downloads() {
+        Map<String, Integer> counts = new HashMap<>();
+        downloads.forEach((url, count) -> counts.put(url, count.get()));
+        return counts;
+    }
+
+    void clearDownloads() {
+        downloads.clear();
+    }
+
+    /**
+     * Crawls graph sequentially by levels
+     *
+     * @return downloaded pages and pages with errors
+     */
+    Expected expected(String url, int depth) {
+        Set<String> seen = new HashSet<>(List.of(url));
+        Set<String> downloaded = new HashSet<>();
+        Set<String> errors = new HashSet<>();
+        List<String> level = List.of(url);
+        for (int remaining = depth; remaining > 0 && !level.isEmpty(); remaining--) {
+            List<String> next = new ArrayList<>();
+            for (String page : level) {
+                if (fails(page(page))) {
+                    errors.add(page);
+                    continue;
+                }
+                downloaded.add(page);
+                if (remaining > 1) {
+                    links(page(page)).stream().filter(seen::add).forEach(next::add);
+                }
+            }
+            level = next;
+        }
+        return new Expected(downloaded, errors);
+    }
+
+    record Expected(Set<String> downloaded, Set<String> errors) {
+    }
+}
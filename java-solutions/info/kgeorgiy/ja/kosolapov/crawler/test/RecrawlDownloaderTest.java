@@ -0,0 +1,143 @@
+package info.kgeorgiy.ja.kosolapov.crawler.test;
+
+import info.kgeorgiy.ja.kosolapov.crawler.RecrawlDownloader;
+import info.kgeorgiy.ja.kosolapov.crawler.WebCrawler;
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@DisplayName("Recrawl downloader test")
+public class RecrawlDownloaderTest {
+    private static final int CRAWLS = 5;
+    private static final int DEPTH = 4;
+    private static final Random random = new Random();
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("recrawl");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private interface RecrawlFactory {
+        RecrawlDownloader create(Downloader downloader, Path store) throws IOException;
+    }
+
+    /**
+     * Crawls twice from the same page, each time with new downloader on the same store
+     *
+     * @return pages downloaded by second crawl
+     */
+    private static Set<String> recrawl(RandomDownloader downloader, String url, Path store, RecrawlFactory factory)
+            throws IOException {
+        RandomDownloader.Expected expected = downloader.expected(url, DEPTH);
+        for (int i = 0; i < 2; i++) {
+            downloader.clearDownloads();
+            try (RecrawlDownloader recrawl = factory.create(downloader, store);
+                 WebCrawler crawler = WebCrawler.builder(recrawl).downloaders(4).extractors(2).perHost(2).build()) {
+                CrawlerTest.checkResult("Crawl " + (i + 1) + " of " + url, expected, crawler.download(url, DEPTH));
+            }
+        }
+        return downloader.downloads().keySet();
+    }
+
+    private static Set<String> union(RandomDownloader.Expected expected) {
+        Set<String> pages = new HashSet<>(expected.downloaded());
+        pages.addAll(expected.errors());
+        return pages;
+    }
+
+    /**
+     * Documents of {@code downloader} with url of page as its validator
+     */
+    private static Downloader validated(Downloader downloader) {
+        return url -> {
+            Document document = downloader.download(url);
+            return new RecrawlDownloader.Validated() {
+                @Override
+                public Map<String, String> validators() {
+                    return Map.of("ETag", url);
+                }
+
+                @Override
+                public List<String> extractLinks() throws IOException {
+                    return document.extractLinks();
+                }
+            };
+        };
+    }
+
+    @Test
+    @DisplayName("Test that second crawl within max age downloads only failed pages")
+    public void testWithinMaxAge() throws IOException {
+        for (int i = 0; i < CRAWLS; i++) {
+            RandomDownloader downloader = new RandomDownloader(random.nextLong());
+            String url = RandomDownloader.url(random.nextInt(RandomDownloader.PAGES));
+            Path store = directory.resolve("fetches-" + i);
+            Set<String> downloaded = recrawl(downloader, url, store,
+                    (d, s) -> new RecrawlDownloader(d, s, Duration.ofHours(1)));
+            Assertions.assertEquals(downloader.expected(url, DEPTH).errors(), downloaded,
+                    "Only failed pages should be downloaded again");
+        }
+    }
+
+    @Test
+    @DisplayName("Test that expired pages are downloaded again without revalidator")
+    public void testExpired() throws IOException {
+        RandomDownloader downloader = new RandomDownloader(random.nextLong());
+        String url = RandomDownloader.url(random.nextInt(RandomDownloader.PAGES));
+        Set<String> downloaded = recrawl(downloader, url, directory.resolve("fetches"),
+                (d, s) -> new RecrawlDownloader(d, s, Duration.ZERO));
+        Assertions.assertEquals(union(downloader.expected(url, DEPTH)), downloaded,
+                "All pages should be downloaded again");
+    }
+
+    @Test
+    @DisplayName("Test that revalidated pages are not downloaded again")
+    public void testRevalidated() throws IOException {
+        RandomDownloader downloader = new RandomDownloader(random.nextLong());
+        String url = RandomDownloader.url(random.nextInt(RandomDownloader.PAGES));
+        AtomicInteger checks = new AtomicInteger();
+        Set<String> downloaded = recrawl(downloader, url, directory.resolve("fetches"),
+                (d, s) -> new RecrawlDownloader(validated(d), s, Duration.ZERO, (page, validators) -> {
+                    checks.incrementAndGet();
+                    return validators.equals(Map.of("ETag", page));
+                }));
+        RandomDownloader.Expected expected = downloader.expected(url, DEPTH);
+        Assertions.assertEquals(expected.errors(), downloaded, "Only failed pages should be downloaded again");
+        Assertions.assertEquals(expected.downloaded().size(), checks.get(), "Each page should be revalidated once");
+    }
+
+    @Test
+    @DisplayName("Test that pages, that can not be revalidated, are downloaded again")
+    public void testRevalidationFailure() throws IOException {
+        RandomDownloader downloader = new RandomDownloader(random.nextLong());
+        String url = RandomDownloader.url(random.nextInt(RandomDownloader.PAGES));
+        Set<String> downloaded = recrawl(downloader, url, directory.resolve("fetches"),
+                (d, s) -> new RecrawlDownloader(validated(d), s, Duration.ZERO, (page, validators) -> {
+                    throw new IOException("Can not revalidate " + page);
+                }));
+        Assertions.assertEquals(union(downloader.expected(url, DEPTH)), downloaded,
+                "All pages should be downloaded again");
+    }
+}
@@ -0,0 +1,145 @@
+package info.kgeorgiy.ja.kosolapov.crawler.test;
+
+import info.kgeorgiy.ja.kosolapov.crawler.WebCrawler;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@DisplayName("Download scheduler test")
+public class SchedulerTest {
+    private static final int PER_HOST = 8;
+    private static final int DOWNLOADERS = 16;
+    private static final int HOSTS = 4;
+    /**
+     * Allowed error of measured time between downloads, in nanoseconds
+     */
+    private static final long TOLERANCE = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static Result crawl(HostDownloader downloader, WebCrawler.Builder builder) {
+        try (WebCrawler crawler = builder.build()) {
+            return crawler.download(HostDownloader.ROOT, 2);
+        }
+    }
+
+    private static WebCrawler.Builder crawler(HostDownloader downloader) {
+        return WebCrawler.builder(downloader).downloaders(DOWNLOADERS).perHost(PER_HOST);
+    }
+
+    @Test
+    @DisplayName("Test limit of downloads of one host at the same time")
+    public void testPerHost() {
+        for (int perHost = 1; perHost <= 3; perHost++) {
+            HostDownloader downloader = new HostDownloader(HOSTS, 200, (page, concurrent) -> 2);
+            crawl(downloader, crawler(downloader).perHost(perHost));
+            for (int host = 0; host < HOSTS; host++) {
+                Assertions.assertEquals(perHost, downloader.maxConcurrency(HostDownloader.host(host)),
+                        "Host " + host + " should be downloaded by " + perHost + " downloaders");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test limit of downloads of all hosts at the same time")
+    public void testGlobalLimit() {
+        for (int limit = 1; limit <= 5; limit += 2) {
+            HostDownloader downloader = new HostDownloader(HOSTS, 200, (page, concurrent) -> 2);
+            crawl(downloader, crawler(downloader).maxInFlight(limit));
+            Assertions.assertEquals(limit, downloader.maxConcurrency(),
+                    "All hosts should be downloaded by " + limit + " downloaders");
+        }
+    }
+
+    @Test
+    @DisplayName("Test minimal delay between downloads of one host")
+    public void testHostDelay() {
+        Duration delay = Duration.ofMillis(20);
+        HostDownloader downloader = new HostDownloader(2, 20, (page, concurrent) -> 1);
+        crawl(downloader, crawler(downloader).hostDelay(delay));
+        for (int host = 0; host < 2; host++) {
+            List<Long> starts = downloader.startTimes(HostDownloader.host(host));
+            for (int i = 1; i < starts.size(); i++) {
+                long gap = starts.get(i) - starts.get(i - 1);
+                Assertions.assertTrue(gap >= delay.toNanos() - TOLERANCE,
+                        "Downloads of host " + host + " started " + gap + " ns apart");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test rate of downloads of one host")
+    public void testHostRate() {
+        int rate = 100;
+        int pages = 2 * rate;
+        HostDownloader downloader = new HostDownloader(1, pages, (page, concurrent) -> 1);
+        long start = System.nanoTime();
+        crawl(downloader, crawler(downloader).hostRate(rate));
+        List<Long> starts = downloader.startTimes(HostDownloader.host(0));
+        Assertions.assertEquals(pages, starts.size(), "All pages should be downloaded");
+        // Burst of one second of requests is allowed at start
+        for (int i = rate; i < starts.size(); i++) {
+            long expected = TimeUnit.SECONDS.toNanos(i - rate + 1) / rate;
+            long actual = starts.get(i) - start;
+            Assertions.assertTrue(actual >= expected - TOLERANCE,
+                    "Download " + i + " started " + actual + " ns after start of crawl, "
+                            + "expected at least " + expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Test that pages of host are downloaded in order of score")
+    public void testScoreOrder() {
+        int pages = 50;
+        HostDownloader downloader = new HostDownloader(1, pages, (page, concurrent) -> 1);
+        crawl(downloader, WebCrawler.builder(downloader).downloaders(1).perHost(1)
+                .scorer((url, depth) -> HostDownloader.page(url)));
+        List<Integer> order = downloader.startOrder(HostDownloader.host(0));
+        Assertions.assertEquals(pages, order.size(), "All pages should be downloaded");
+        // First page starts before others are scheduled
+        for (int i = 2; i < order.size(); i++) {
+            Assertions.assertTrue(order.get(i - 1) > order.get(i), "Pages started in order " + order);
+        }
+    }
+
+    private static WebCrawler.Builder adaptive(HostDownloader downloader) {
+        return WebCrawler.builder(downloader).downloaders(DOWNLOADERS).perHost(PER_HOST).adaptivePerHost(true);
+    }
+
+    @Test
+    @DisplayName("Test that adaptive limit of host with latency independent of load stays full")
+    public void testAdaptiveSteadyHost() {
+        int pages = 400;
+        HostDownloader downloader = new HostDownloader(1, pages, (page, concurrent) -> page % 4 == 0 ? 30 : 3);
+        long start = System.nanoTime();
+        Result result = crawl(downloader, adaptive(downloader));
+        long time = System.nanoTime() - start;
+        String host = HostDownloader.host(0);
+        Assertions.assertEquals(pages + 1, result.getDownloaded().size(), "All pages should be downloaded");
+        Assertions.assertEquals(PER_HOST, downloader.maxConcurrency(host), "Limit of host should grow to perHost");
+        double concurrency = (double) downloader.busyTime(host) / time;
+        Assertions.assertTrue(concurrency > PER_HOST * 0.6,
+                "Average count of downloads of host at the same time is " + concurrency);
+    }
+
+    @Test
+    @DisplayName("Test that adaptive limit of overloaded host decreases")
+    public void testAdaptiveOverloadedHost() {
+        int pages = 200;
+        HostDownloader downloader = new HostDownloader(1, pages, (page, concurrent) -> {
+            if (concurrent > 2) {
+                throw new IOException("Overloaded");
+            }
+            return 3;
+        });
+        Result result = crawl(downloader, adaptive(downloader));
+        Assertions.assertEquals(pages + 1, result.getDownloaded().size() + result.getErrors().size(),
+                "All pages should be visited");
+        Assertions.assertTrue(result.getErrors().size() < pages / 4,
+                result.getErrors().size() + " of " + pages + " pages failed");
+    }
+}